@@ -2,6 +2,10 @@ package com.example.lambda;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.json.JSONObject;
 import org.json.JSONArray;
 
@@ -10,6 +14,8 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.Base64;
+import java.util.Map;
 
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
@@ -19,6 +25,14 @@ import software.amazon.awssdk.services.secretsmanager.model.SecretsManagerExcept
 
 public class EmailVerificationLambda {
 
+    // Must match the webapp's VerificationMessageEncoder
+    private static final String CONTENT_TYPE_ATTRIBUTE = "contentType";
+    private static final String CBOR_CONTENT_TYPE = "application/cbor";
+
+    // Readers are built once per container and reused across invocations
+    private static final ObjectReader JSON_READER = new JsonMapper().reader();
+    private static final ObjectReader CBOR_READER = new CBORMapper().reader();
+
     public String handleRequest(SNSEvent snsEvent, Context context) {
         context.getLogger().log("Lambda function invoked with SNS event: " + snsEvent);
 
@@ -37,10 +51,10 @@ public class EmailVerificationLambda {
 
             // Parse the SNS message
             context.getLogger().log("Parsing SNS message...");
-            JSONObject messageJson = new JSONObject(message);
-            String email = messageJson.getString("email");
-            String verificationToken = messageJson.getString("verificationToken");
-            String firstName = messageJson.optString("firstName", "User");
+            JsonNode messageJson = parseMessage(message, snsRecord.getSNS().getMessageAttributes());
+            String email = requiredText(messageJson, "email");
+            String verificationToken = requiredText(messageJson, "verificationToken");
+            String firstName = messageJson.path("firstName").asText("User");
 
             context.getLogger().log("Parsed SNS message - Email: " + email +
                     ", Verification Token: " + verificationToken +
@@ -80,6 +94,23 @@ public class EmailVerificationLambda {
         }
     }
 
+    // Decode the payload according to its contentType attribute; messages without one are JSON
+    private static JsonNode parseMessage(String message, Map<String, SNSEvent.MessageAttribute> attributes) throws Exception {
+        SNSEvent.MessageAttribute contentType = attributes == null ? null : attributes.get(CONTENT_TYPE_ATTRIBUTE);
+        if (contentType != null && CBOR_CONTENT_TYPE.equals(contentType.getValue())) {
+            return CBOR_READER.readTree(Base64.getDecoder().decode(message));
+        }
+        return JSON_READER.readTree(message);
+    }
+
+    private static String requiredText(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            throw new IllegalArgumentException("SNS message is missing " + field);
+        }
+        return value.asText();
+    }
+
     private void sendVerificationEmail(Context context, String firstName, String toEmail, String verificationLink,
                                        String apiKey, String senderEmail) throws Exception {
         context.getLogger().log("Preparing to send verification email...");
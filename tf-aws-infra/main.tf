@@ -334,6 +334,13 @@ resource "aws_launch_template" "webapp" {
                 echo "Error: Failed to retrieve database credentials from Secrets Manager."
               fi
 
+              echo "Retrieving bearer token signing key from Secrets Manager..."
+              AUTH_TOKEN_SECRET=$(aws secretsmanager get-secret-value --secret-id ${aws_secretsmanager_secret.auth_token_key.id} --query SecretString --output text | jq -r .key)
+              if [ $? -ne 0 ]; then
+                echo "Error: Failed to retrieve bearer token signing key from Secrets Manager."
+              fi
+              echo "AUTH_TOKEN_SECRET=$AUTH_TOKEN_SECRET" | sudo tee -a /etc/csye6225/application-env > /dev/null
+
               echo "Retrieving database endpoint..."
               DB_ENDPOINT=$(aws rds describe-db-instances --db-instance-identifier csye6225 --query 'DBInstances[0].Endpoint.Address' --output text)
               if [ $? -ne 0 ]; then
@@ -427,6 +434,7 @@ resource "aws_iam_policy" "s3_access_policy" {
           "s3:ListBucket",
           "s3:GetObject",
           "s3:PutObject",
+          "s3:PutObjectTagging", # signed into direct-upload URLs
           "s3:DeleteObject"
         ]
         Resource = [
@@ -566,7 +574,10 @@ resource "aws_iam_policy" "ec2_secrets_access_policy" {
         Action = [
           "secretsmanager:GetSecretValue"
         ]
-        Resource = aws_secretsmanager_secret.db_password.arn
+        Resource = [
+          aws_secretsmanager_secret.db_password.arn,
+          aws_secretsmanager_secret.auth_token_key.arn
+        ]
       },
       {
         Sid    = "KMSDecryptAccess"
@@ -727,6 +738,35 @@ resource "aws_s3_bucket_lifecycle_configuration" "bucket_lifecycle" {
       storage_class = "STANDARD_IA"
     }
   }
+
+  # Direct uploads stay tagged until the webapp confirms them; drop those that never are
+  rule {
+    id     = "expire_unconfirmed_uploads"
+    status = "Enabled"
+
+    filter {
+      tag {
+        key   = "upload"
+        value = "pending"
+      }
+    }
+
+    expiration {
+      days = 1
+    }
+  }
+}
+
+# Browsers PUT profile pictures straight to the bucket with pre-signed URLs
+resource "aws_s3_bucket_cors_configuration" "user_pictures" {
+  bucket = aws_s3_bucket.user_pictures.id
+
+  cors_rule {
+    allowed_methods = ["PUT"]
+    allowed_origins = var.picture_upload_origins
+    allowed_headers = ["content-type", "x-amz-tagging"]
+    max_age_seconds = 3000
+  }
 }
 
 # Make bucket private
@@ -817,6 +857,75 @@ resource "aws_cloudwatch_metric_alarm" "low_cpu" {
   }
 }
 
+# Connection pool alarms on the StatsD meters the webapp forwards through the CloudWatch agent.
+# The agent adds a host dimension, so the queries aggregate across instances with Metrics Insights.
+resource "aws_sns_topic" "webapp_alarms" {
+  name = "webapp-alarms"
+}
+
+resource "aws_sns_topic_subscription" "webapp_alarms_email" {
+  count     = var.alarm_email == "" ? 0 : 1
+  topic_arn = aws_sns_topic.webapp_alarms.arn
+  protocol  = "email"
+  endpoint  = var.alarm_email
+}
+
+# SLO: connections are handed out in under 10 ms on average; sustained waits mean the pool is too small
+# for the traffic or connections are being held across slow calls
+resource "aws_cloudwatch_metric_alarm" "db_pool_acquire_slow" {
+  alarm_name          = "webapp-db-pool-acquire-slow"
+  comparison_operator = "GreaterThanThreshold"
+  evaluation_periods  = 5
+  datapoints_to_alarm = 3
+  threshold           = 10
+  treat_missing_data  = "notBreaching"
+  alarm_actions       = [aws_sns_topic.webapp_alarms.arn]
+  ok_actions          = [aws_sns_topic.webapp_alarms.arn]
+
+  metric_query {
+    id          = "acquire_ms"
+    expression  = "SELECT AVG(\"csye6225.hikaricp.connections.acquire.primary\") FROM CWAgent"
+    period      = 60
+    return_data = true
+  }
+}
+
+# Requests queued behind an exhausted pool on any instance
+resource "aws_cloudwatch_metric_alarm" "db_pool_saturated" {
+  alarm_name          = "webapp-db-pool-saturated"
+  comparison_operator = "GreaterThanThreshold"
+  evaluation_periods  = 5
+  datapoints_to_alarm = 3
+  threshold           = 0
+  treat_missing_data  = "notBreaching"
+  alarm_actions       = [aws_sns_topic.webapp_alarms.arn]
+  ok_actions          = [aws_sns_topic.webapp_alarms.arn]
+
+  metric_query {
+    id          = "pending"
+    expression  = "SELECT MAX(\"csye6225.hikaricp.connections.pending.primary\") FROM CWAgent"
+    period      = 60
+    return_data = true
+  }
+}
+
+# Any request that waited the full connection-timeout and failed
+resource "aws_cloudwatch_metric_alarm" "db_pool_timeouts" {
+  alarm_name          = "webapp-db-pool-timeouts"
+  comparison_operator = "GreaterThanThreshold"
+  evaluation_periods  = 1
+  threshold           = 0
+  treat_missing_data  = "notBreaching"
+  alarm_actions       = [aws_sns_topic.webapp_alarms.arn]
+
+  metric_query {
+    id          = "timeouts"
+    expression  = "SELECT SUM(\"csye6225.hikaricp.connections.timeout.primary\") FROM CWAgent"
+    period      = 60
+    return_data = true
+  }
+}
+
 
 # Lambda Function
 resource "aws_lambda_function" "email_verification" {
@@ -1134,6 +1243,25 @@ resource "aws_secretsmanager_secret_version" "db_password" {
   })
 }
 
+# HS256 key for the webapp's bearer tokens; shared by all instances so any of them can verify a token
+resource "random_password" "auth_token_key" {
+  length  = 64
+  special = false
+}
+
+resource "aws_secretsmanager_secret" "auth_token_key" {
+  name        = "auth-token-key-${random_string.kms_suffix.result}"
+  description = "Webapp bearer token signing key"
+  kms_key_id  = aws_kms_key.secrets_key.key_id
+}
+
+resource "aws_secretsmanager_secret_version" "auth_token_key" {
+  secret_id = aws_secretsmanager_secret.auth_token_key.id
+  secret_string = jsonencode({
+    key = random_password.auth_token_key.result
+  })
+}
+
 #  Secret for Email Service Credentials
 resource "aws_secretsmanager_secret" "email_credentials" {
   name        = "email-credentials-${random_string.kms_suffix.result}"
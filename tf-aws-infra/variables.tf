@@ -113,3 +113,14 @@ variable "cert_chain" {
   type        = string
 }
 
+variable "alarm_email" {
+  description = "Email address subscribed to the webapp alarm topic; empty for no subscription"
+  type        = string
+  default     = ""
+}
+
+variable "picture_upload_origins" {
+  description = "Origins allowed to PUT profile pictures to the bucket with pre-signed URLs"
+  type        = list(string)
+  default     = ["*"]
+}
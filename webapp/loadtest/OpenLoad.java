@@ -0,0 +1,182 @@
+// Open-model load driver for machines without k6, needing only a JDK. It runs the scenarios of
+// self-endpoint.js or signup.js at a constant arrival rate and writes a summary in the shape of k6's
+// --summary-export, so loadtest/compare.sh reads both:
+//
+//   BASE_URL=http://localhost:8080 EMAIL=load@example.com PASSWORD=secret SUMMARY=self-servlet.json \
+//       java loadtest/OpenLoad.java self
+//   BASE_URL=http://localhost:8080 SUMMARY=signup-servlet.json java loadtest/OpenLoad.java signup
+//
+// RATE (requests/s), DURATION (e.g. 30s, 2m) and MAX_VUS (requests in flight before arrivals are dropped)
+// default as in the k6 scripts. Run it on another machine than the app when measuring, as with k6.
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+public class OpenLoad {
+
+    // One constant-arrival-rate scenario; request builds the n-th request
+    record Scenario(String name, double rate, int expectedStatus, LongFunction<HttpRequest> request,
+                    ConcurrentLinkedQueue<Long> latencies, AtomicLong failed) {
+
+        Scenario(String name, double rate, int expectedStatus, LongFunction<HttpRequest> request) {
+            this(name, rate, expectedStatus, request, new ConcurrentLinkedQueue<>(), new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "self";
+        String baseUrl = env("BASE_URL", "http://localhost:8080");
+        int rate = Integer.parseInt(env("RATE", mode.equals("signup") ? "50" : "500"));
+        Duration duration = parseDuration(env("DURATION", "2m"));
+        int maxInFlight = Integer.parseInt(env("MAX_VUS", mode.equals("signup") ? "1000" : "2500"));
+        Path summary = Path.of(env("SUMMARY", "summary-" + mode + ".json"));
+
+        List<Scenario> scenarios = switch (mode) {
+            case "self" -> selfScenarios(baseUrl, rate);
+            case "signup" -> signupScenarios(baseUrl, rate);
+            default -> throw new IllegalArgumentException("usage: java loadtest/OpenLoad.java self|signup");
+        };
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicLong dropped = new AtomicLong();
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        List<Thread> arrivals = new ArrayList<>();
+        for (Scenario scenario : scenarios) {
+            Thread thread = new Thread(() -> {
+                long interval = (long) (TimeUnit.SECONDS.toNanos(1) / scenario.rate());
+                long iteration = 0;
+                for (long next = start; next < end; next += interval, iteration++) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    // Arrivals keep their schedule; past MAX_VUS outstanding requests they are dropped, as in k6
+                    if (inFlight.incrementAndGet() > maxInFlight) {
+                        inFlight.decrementAndGet();
+                        dropped.incrementAndGet();
+                        continue;
+                    }
+                    long sent = System.nanoTime();
+                    client.sendAsync(scenario.request().apply(iteration), HttpResponse.BodyHandlers.discarding())
+                            .whenComplete((response, error) -> {
+                                scenario.latencies().add(System.nanoTime() - sent);
+                                if (error != null || response.statusCode() != scenario.expectedStatus()) {
+                                    scenario.failed().incrementAndGet();
+                                }
+                                inFlight.decrementAndGet();
+                            });
+                }
+            }, "arrivals-" + scenario.name());
+            thread.start();
+            arrivals.add(thread);
+        }
+        for (Thread thread : arrivals) {
+            thread.join();
+        }
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        Files.writeString(summary, summaryJson(scenarios, dropped.get(), elapsedSeconds), StandardCharsets.UTF_8);
+        System.out.println(Files.readString(summary));
+    }
+
+    // 90% GET and 10% PUT /v1/user/self for one verified account, as in self-endpoint.js
+    private static List<Scenario> selfScenarios(String baseUrl, int rate) {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString(
+                (env("EMAIL", null) + ":" + env("PASSWORD", null)).getBytes(StandardCharsets.UTF_8));
+        URI self = URI.create(baseUrl + "/v1/user/self");
+        return List.of(
+                new Scenario("get_self", rate * 0.9, 200, iteration -> HttpRequest.newBuilder(self)
+                        .header("Authorization", authorization)
+                        .GET()
+                        .build()),
+                new Scenario("put_self", Math.max(1, rate * 0.1), 200, iteration -> HttpRequest.newBuilder(self)
+                        .header("Authorization", authorization)
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(
+                                "{\"firstName\":\"Load\",\"lastName\":\"Test" + (iteration % 100) + "\"}"))
+                        .build()));
+    }
+
+    // A new address under @loadtest.invalid per request, as in signup.js
+    private static List<Scenario> signupScenarios(String baseUrl, int rate) {
+        long run = System.currentTimeMillis();
+        URI signup = URI.create(baseUrl + "/v1/user");
+        return List.of(new Scenario("signup", rate, 201, iteration -> HttpRequest.newBuilder(signup)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"load-" + run + "-" + iteration
+                        + "@loadtest.invalid\",\"password\":\"load-test-password\",\"firstName\":\"Load\",\"lastName\":\"Test\"}"))
+                .build()));
+    }
+
+    // The parts of a k6 summary export that compare.sh reads; durations in ms
+    private static String summaryJson(List<Scenario> scenarios, long dropped, double elapsedSeconds) {
+        long requests = 0;
+        long failed = 0;
+        StringBuilder durations = new StringBuilder();
+        for (Scenario scenario : scenarios) {
+            long[] nanos = scenario.latencies().stream().mapToLong(Long::longValue).sorted().toArray();
+            requests += nanos.length;
+            failed += scenario.failed().get();
+            durations.append(String.format(Locale.ROOT,
+                    ",%n    \"http_req_duration{scenario:%s}\": {\"avg\": %.3f, \"p(50)\": %.3f, \"p(95)\": %.3f,"
+                            + " \"p(99)\": %.3f, \"max\": %.3f}",
+                    scenario.name(), Arrays.stream(nanos).average().orElse(0) / 1e6, percentile(nanos, 50),
+                    percentile(nanos, 95), percentile(nanos, 99), nanos.length == 0 ? 0 : nanos[nanos.length - 1] / 1e6));
+        }
+        return String.format(Locale.ROOT, "{%n  \"metrics\": {%n"
+                        + "    \"http_reqs\": {\"count\": %d, \"rate\": %.3f},%n"
+                        + "    \"http_req_failed\": {\"value\": %.5f},%n"
+                        + "    \"dropped_iterations\": {\"count\": %d}%s%n  }%n}%n",
+                requests, requests / elapsedSeconds, requests == 0 ? 0 : (double) failed / requests, dropped, durations);
+    }
+
+    // Nearest rank, in ms
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private static Duration parseDuration(String value) {
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("DURATION must end in s or m: " + value);
+        };
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        if (value == null && defaultValue == null) {
+            throw new IllegalArgumentException(name + " must be set");
+        }
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+# Prints two k6 summary exports (--summary-export) side by side: request rate, failures, dropped
+# iterations and the latency of every scenario with a threshold.
+#
+#   loadtest/compare.sh summary-before.json summary-after.json
+set -euo pipefail
+
+if [ $# -ne 2 ]; then
+    echo "usage: $0 <baseline-summary.json> <candidate-summary.json>" >&2
+    exit 1
+fi
+
+summary() {
+    jq -r '
+        .metrics as $m
+        | ["http_reqs/s", ($m.http_reqs.rate // 0)],
+          ["failed rate", ($m.http_req_failed.value // 0)],
+          ["dropped iterations", ($m.dropped_iterations.count // 0)],
+          ($m | to_entries[] | select(.key | startswith("http_req_duration{"))
+              | (.value | to_entries[] | select(.key == "p(50)" or .key == "p(99)" or .key == "max")) as $stat
+              | [(.key | sub("http_req_duration"; "")) + " " + $stat.key + " ms", $stat.value])
+        | @tsv' "$1"
+}
+
+printf '%-45s %14s %14s\n' "metric" "$(basename "$1" .json)" "$(basename "$2" .json)"
+join -t $'\t' <(summary "$1" | sort) <(summary "$2" | sort) \
+    | awk -F'\t' '{ printf "%-45s %14.3f %14.3f\n", $1, $2, $3 }'
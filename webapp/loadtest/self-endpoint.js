@@ -0,0 +1,67 @@
+// k6 load test for the authenticated /v1/user/self endpoints.
+//
+// Run the same script against the two builds or configurations being compared and compare
+// http_reqs/s and the p(99) of http_req_duration per endpoint from the exported summaries:
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e EMAIL=load@example.com -e PASSWORD=secret \
+//          --summary-export=summary-before.json loadtest/self-endpoint.js
+//   loadtest/compare.sh summary-before.json summary-after.json
+//
+// The account must already exist and be verified, otherwise /self answers 403.
+import http from 'k6/http';
+import encoding from 'k6/encoding';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const EMAIL = __ENV.EMAIL;
+const PASSWORD = __ENV.PASSWORD;
+const RATE = parseInt(__ENV.RATE || '500', 10);
+const DURATION = __ENV.DURATION || '2m';
+
+const headers = {
+    Authorization: `Basic ${encoding.b64encode(`${EMAIL}:${PASSWORD}`)}`,
+    'Content-Type': 'application/json',
+};
+
+// Open model: arrivals keep coming at RATE/s even when the server slows down,
+// so saturation shows up as latency and dropped iterations rather than a lower request rate
+export const options = {
+    scenarios: {
+        get_self: {
+            executor: 'constant-arrival-rate',
+            exec: 'getSelf',
+            rate: Math.round(RATE * 0.9),
+            timeUnit: '1s',
+            duration: DURATION,
+            preAllocatedVUs: 200,
+            maxVUs: 2000,
+        },
+        put_self: {
+            executor: 'constant-arrival-rate',
+            exec: 'putSelf',
+            rate: Math.max(1, Math.round(RATE * 0.1)),
+            timeUnit: '1s',
+            duration: DURATION,
+            preAllocatedVUs: 50,
+            maxVUs: 500,
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        'http_req_failed': ['rate<0.01'],
+        'http_req_duration{scenario:get_self}': ['p(99)<500'],
+        'http_req_duration{scenario:put_self}': ['p(99)<1000'],
+    },
+};
+
+export function getSelf() {
+    const res = http.get(`${BASE_URL}/v1/user/self`, { headers });
+    check(res, { 'GET /self is 200': (r) => r.status === 200 });
+}
+
+// Only names change, so the password hash and credential cache stay untouched
+export function putSelf() {
+    const body = JSON.stringify({ firstName: 'Load', lastName: `Test${__ITER % 100}` });
+    const res = http.put(`${BASE_URL}/v1/user/self`, body, { headers });
+    check(res, { 'PUT /self is 200': (r) => r.status === 200 });
+}
@@ -0,0 +1,48 @@
+// k6 load test for signups (POST /v1/user), the endpoint that hashes a password per request.
+//
+// Run it against each build or configuration to compare, then put the summaries side by side:
+//
+//   k6 run -e BASE_URL=http://localhost:8080 --summary-export=signup-before.json loadtest/signup.js
+//   k6 run -e BASE_URL=http://localhost:8080 --summary-export=signup-after.json loadtest/signup.js
+//   loadtest/compare.sh signup-before.json signup-after.json
+//
+// Start the app with --admission.enabled=false, or every client past the first few signups gets 429.
+// Each iteration registers a new address under @loadtest.invalid; delete them afterwards.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RATE = parseInt(__ENV.RATE || '50', 10);
+const DURATION = __ENV.DURATION || '2m';
+const RUN = Date.now();
+
+// Open model, as in self-endpoint.js; once the hashing pool's queue is full the app answers 503
+export const options = {
+    scenarios: {
+        signup: {
+            executor: 'constant-arrival-rate',
+            exec: 'signup',
+            rate: RATE,
+            timeUnit: '1s',
+            duration: DURATION,
+            preAllocatedVUs: 100,
+            maxVUs: 1000,
+        },
+    },
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+    thresholds: {
+        'http_req_failed': ['rate<0.01'],
+        'http_req_duration{scenario:signup}': ['p(99)<2000'],
+    },
+};
+
+export function signup() {
+    const body = JSON.stringify({
+        email: `load-${RUN}-${__VU}-${__ITER}@loadtest.invalid`,
+        password: 'load-test-password',
+        firstName: 'Load',
+        lastName: 'Test',
+    });
+    const res = http.post(`${BASE_URL}/v1/user`, body, { headers: { 'Content-Type': 'application/json' } });
+    check(res, { 'POST /v1/user is 201': (r) => r.status === 201 });
+}
@@ -5,7 +5,7 @@
 
 sudo apt-get update
 sudo apt-get upgrade -y
-sudo apt-get install -y openjdk-17-jdk
+sudo apt-get install -y openjdk-21-jdk
 #sudo apt install wget gnupg2 -y # prereq for postgres
 #wget -qO - https://www.postgresql.org/media/keys/ACCC4CF8.asc | sudo tee /etc/apt/trusted.gpg.d/postgresql.asc # add postgres repo
 #echo "deb http://apt.postgresql.org/pub/repos/apt $(lsb_release -cs)-pgdg main" | sudo tee /etc/apt/sources.list.d/pgdg.list
@@ -31,6 +31,7 @@ echo "DB_USERNAME=${DB_USERNAME}" | sudo tee -a /etc/csye6225/application-env
 echo "DB_PASSWORD=${DB_PASSWORD}" | sudo tee -a /etc/csye6225/application-env
 echo "AWS_S3_BUCKET_NAME=AWS_S3_BUCKET_NAME_PLACEHOLDER" | sudo tee -a /etc/csye6225/application-env
 echo "SNS_TOPIC_ARN=SNS_TOPIC_ARN_PLACEHOLDER" | sudo tee -a /etc/csye6225/application-env
+echo "VIRTUAL_THREADS_ENABLED=false" | sudo tee -a /etc/csye6225/application-env
 sudo chmod 600 /etc/csye6225/application-env
 #sudo chown csye6225:csye6225 /etc/csye6225/application-env
 #
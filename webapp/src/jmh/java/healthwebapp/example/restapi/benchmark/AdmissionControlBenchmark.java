@@ -0,0 +1,113 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.config.AdmissionControlFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost the admission filter adds to a signup, with four threads contending on the global bucket.
+// admitted: limits high enough that every request passes; shed: a flood from few clients, mostly 429s.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(4)
+@Fork(1)
+public class AdmissionControlBenchmark {
+
+    private static final FilterChain NO_OP = (request, response) -> {
+    };
+
+    @State(Scope.Benchmark)
+    public static class Limits {
+
+        @Param({"admitted", "shed"})
+        public String load;
+
+        AdmissionControlFilter filter;
+        String[] clients;
+
+        @Setup
+        public void setUp() {
+            boolean admitted = "admitted".equals(load);
+            filter = admitted
+                    ? new AdmissionControlFilter(new SimpleMeterRegistry(), true, 1e9, 1_000_000, 65536, 1e9, 1_000_000, 1_000)
+                    : new AdmissionControlFilter(new SimpleMeterRegistry(), true, 10, 5, 65536, 50, 100, 32);
+            clients = new String[admitted ? 10_000 : 16];
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+            }
+        }
+    }
+
+    @Benchmark
+    public int signup(Limits limits) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/user");
+        request.setRemoteAddr(limits.clients[ThreadLocalRandom.current().nextInt(limits.clients.length)]);
+        HttpServletResponse response = new DiscardingResponse();
+        limits.filter.doFilter(request, response, NO_OP);
+        return response.getStatus();
+    }
+
+    // The mock request and response alone, to subtract from signup
+    @Benchmark
+    public int baseline(Limits limits) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/user");
+        request.setRemoteAddr(limits.clients[ThreadLocalRandom.current().nextInt(limits.clients.length)]);
+        return new DiscardingResponse().getStatus() + request.getRemoteAddr().length();
+    }
+
+    // The mock response copies a body one byte at a time, which would swamp the 429 path
+    private static final class DiscardingResponse extends HttpServletResponseWrapper {
+
+        private static final ServletOutputStream DISCARD = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+            }
+        };
+
+        DiscardingResponse() {
+            super(new MockHttpServletResponse());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return DISCARD;
+        }
+    }
+}
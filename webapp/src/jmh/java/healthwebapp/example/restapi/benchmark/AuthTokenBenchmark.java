@@ -0,0 +1,52 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.service.AuthTokenService;
+import healthwebapp.example.restapi.service.TokenDenyList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Per-request authentication cost with a bearer token, to compare with PasswordEncoderBenchmark.matches
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AuthTokenBenchmark {
+
+    private JwtDecoder decoder;
+    private String accessToken;
+
+    @Setup
+    public void setUp() {
+        // Verification needs no profile lookup, so the service runs without a profile cache
+        AuthTokenService tokens = new AuthTokenService(null, new TokenDenyList(new SimpleMeterRegistry()),
+                new SimpleMeterRegistry(), Set.of(), "benchmark-secret-of-at-least-32-bytes", 900, 86400);
+        UserProfile user = new UserProfile(1L, "jane@example.com", "$2a$10$hash", "Jane", "Doe", true,
+                LocalDateTime.now(), LocalDateTime.now(), null, null, null, null, 0, null);
+        decoder = tokens.accessTokenDecoder();
+        accessToken = tokens.issue(user, List.of()).accessToken();
+    }
+
+    @Benchmark
+    public Jwt verify() {
+        return decoder.decode(accessToken);
+    }
+}
@@ -0,0 +1,93 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.service.ProfilePictureProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Profile pictures processed per second on one core: a single benchmark thread driving a
+// one-thread pool. fullDecode is the ImageIO.read the subsampled decode replaces.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class ProfilePictureBenchmark {
+
+    // Phone camera (12 MP) and a typical cropped avatar
+    @Param({"4032x3024", "1024x1024"})
+    public String dimensions;
+
+    private byte[] photo;
+    private byte[] scratch;
+    private ProfilePictureProcessor processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = dimensions.split("x");
+        photo = photo(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        scratch = new byte[photo.length];
+        processor = new ProfilePictureProcessor(List.of(128, 256, 512), List.of(256), 1, 4, 40_000_000,
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        processor.shutdown();
+    }
+
+    @Benchmark
+    public List<ProfilePictureProcessor.Variant> process() {
+        // Stripping works in place, so every run starts from a fresh copy
+        System.arraycopy(photo, 0, scratch, 0, photo.length);
+        return processor.process(scratch, photo.length, "image/jpeg").variants().join();
+    }
+
+    @Benchmark
+    public BufferedImage fullDecode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(photo));
+    }
+
+    // Smooth gradients with sensor-like noise, so the JPEG compresses like a photo rather than a flat fill
+    private static byte[] photo(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = clamp(255 * x / width + random.nextInt(16));
+                int g = clamp(255 * y / height + random.nextInt(16));
+                int b = clamp(128 + random.nextInt(32));
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    private static int clamp(int value) {
+        return Math.min(255, value);
+    }
+}
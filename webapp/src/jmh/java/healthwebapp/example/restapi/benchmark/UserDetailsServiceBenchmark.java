@@ -0,0 +1,92 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.RestapiApplication;
+import healthwebapp.example.restapi.config.ProfileUserDetailsService;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.service.UserProfileCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Basic-auth user lookup through JPA against the in-memory H2 database used by the tests
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDetailsServiceBenchmark {
+
+    @Param({"10000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private UserDetailsService userDetailsService;
+    private String[] emails;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(RestapiApplication.class)
+                .profiles("test")
+                // Command-line arguments, so they beat application-test.properties
+                .run(
+                        "--server.port=0",
+                        "--aws.s3.bucket-name=benchmark-bucket",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--outbox.poll-interval-ms=3600000");
+        // The lookup the Basic-auth provider is built with
+        userDetailsService = new ProfileUserDetailsService(context.getBean(UserProfileCache.class), Set.of());
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<User> batch = new ArrayList<>(users);
+        emails = new String[users];
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < users; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@example.com");
+            user.setFirstName("User");
+            user.setLastName(String.valueOf(i));
+            user.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z8y5PgRaLgKuCq0Xm5Z1vQOe");
+            user.setVerified(true);
+            user.setAccountCreated(now);
+            user.setAccountUpdated(now);
+            batch.add(user);
+            emails[i] = user.getEmail();
+        }
+        userRepository.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDetails loadUserByUsername() {
+        String email = emails[ThreadLocalRandom.current().nextInt(emails.length)];
+        return userDetailsService.loadUserByUsername(email);
+    }
+}
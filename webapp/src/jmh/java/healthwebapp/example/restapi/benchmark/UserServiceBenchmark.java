@@ -0,0 +1,52 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.dto.UserDTO;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Entity to response mapping done on every /v1/user/self call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private UserService userService;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        // convertToDTO does not touch S3, so no client is needed
+        userService = new UserService(null);
+
+        user = new User();
+        user.setId(42L);
+        user.setEmail("jane.doe@example.com");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setAccountCreated(LocalDateTime.now().minusDays(30));
+        user.setAccountUpdated(LocalDateTime.now());
+        user.setProfilePicUrl("https://bucket.s3.amazonaws.com/users/42/profile-picture.png");
+        user.setProfilePicUploadDate(LocalDateTime.now());
+    }
+
+    @Benchmark
+    public UserDTO convertToDTO() {
+        return userService.convertToDTO(user);
+    }
+}
@@ -0,0 +1,80 @@
+package healthwebapp.example.restapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import healthwebapp.example.restapi.service.VerificationMessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+// Serializing the SNS verification message written on every signup
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerificationPayloadBenchmark {
+
+    private UserVerificationPayload payload;
+    private ObjectMapper sharedMapper;
+    private ObjectWriter sharedWriter;
+    private VerificationMessageEncoder jsonEncoder;
+    private VerificationMessageEncoder cborEncoder;
+
+    @Setup
+    public void setUp() {
+        payload = new UserVerificationPayload(42L, "jane.doe@example.com",
+                UUID.randomUUID().toString(), LocalDateTime.now().plusMinutes(2));
+        sharedMapper = newMapper();
+        sharedWriter = sharedMapper.writerFor(UserVerificationPayload.class);
+        jsonEncoder = new VerificationMessageEncoder("json");
+        cborEncoder = new VerificationMessageEncoder("cbor");
+    }
+
+    // What createUser used to do: build and configure a mapper for every request
+    @Benchmark
+    public String perRequestObjectMapper() throws JsonProcessingException {
+        return newMapper().writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public String sharedObjectMapper() throws JsonProcessingException {
+        return sharedMapper.writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public String sharedObjectWriter() throws JsonProcessingException {
+        return sharedWriter.writeValueAsString(payload);
+    }
+
+    @Benchmark
+    public String encoderJson() {
+        return jsonEncoder.encode(payload);
+    }
+
+    @Benchmark
+    public String encoderCbor() {
+        return cborEncoder.encode(payload);
+    }
+
+    private static ObjectMapper newMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new JavaTimeModule());
+        return mapper;
+    }
+}
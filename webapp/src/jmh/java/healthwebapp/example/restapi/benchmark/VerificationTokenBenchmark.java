@@ -0,0 +1,112 @@
+package healthwebapp.example.restapi.benchmark;
+
+import healthwebapp.example.restapi.RestapiApplication;
+import healthwebapp.example.restapi.entity.VerificationToken;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.repository.VerificationTokenRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Token lookup plus conditional user update, the two statements behind /v1/user/verify, at
+// growing table sizes; the score should stay flat across the users parameter. The token row is
+// not deleted so every invocation sees the same table. For the 10M case run
+//   mvn -Pjmh -DskipTests verify -Djmh.args="VerificationTokenBenchmark -p users=10000000 -jvmArgs -Xmx8g"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 6, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class VerificationTokenBenchmark {
+
+    private static final int INSERT_BATCH = 10_000;
+
+    @Param({"100000", "1000000"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private VerificationTokenRepository tokenRepository;
+    private UserRepository userRepository;
+    private TransactionTemplate transactionTemplate;
+    private byte[][] hashes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(RestapiApplication.class)
+                .profiles("test")
+                // Command-line arguments, so they beat application-test.properties
+                .run(
+                        "--server.port=0",
+                        "--aws.s3.bucket-name=benchmark-bucket",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--outbox.poll-interval-ms=3600000",
+                        "--verification.sweep-interval-ms=3600000");
+        tokenRepository = context.getBean(VerificationTokenRepository.class);
+        userRepository = context.getBean(UserRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        // Plain JDBC batches; going through JPA would take longer than the measurement itself
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expiresAt = Timestamp.valueOf(LocalDateTime.now().plusDays(1));
+        hashes = new byte[users][];
+
+        List<Object[]> userRows = new ArrayList<>(INSERT_BATCH);
+        List<Object[]> tokenRows = new ArrayList<>(INSERT_BATCH);
+        for (int i = 0; i < users; i++) {
+            long id = i + 1;
+            hashes[i] = sha256.digest(("token-" + i).getBytes(StandardCharsets.UTF_8));
+            userRows.add(new Object[]{id, "user" + i + "@example.com", "x", "User", String.valueOf(i), now, now});
+            tokenRows.add(new Object[]{hashes[i], id, expiresAt});
+            if (userRows.size() == INSERT_BATCH || i == users - 1) {
+                jdbc.batchUpdate("insert into users (id, email, password, first_name, last_name, is_verified,"
+                        + " account_created, account_updated) values (?, ?, ?, ?, ?, false, ?, ?)", userRows);
+                jdbc.batchUpdate("insert into verification_tokens (token_hash, user_id, expires_at) values (?, ?, ?)",
+                        tokenRows);
+                userRows.clear();
+                tokenRows.clear();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Integer verify() {
+        byte[] hash = hashes[ThreadLocalRandom.current().nextInt(hashes.length)];
+        return transactionTemplate.execute(status -> {
+            VerificationToken token = tokenRepository.findByTokenHash(hash).orElseThrow();
+            return userRepository.markVerified(token.getUserId(), LocalDateTime.now());
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for the unauthenticated write endpoints, POST /v1/user and DELETE /v1/user/self.
+ * Runs ahead of Spring Security, so a shed request costs no BCrypt, no database work and no SNS
+ * publish. A request is admitted only if its client IP's bucket, the global bucket and the
+ * concurrency limit all have room; otherwise it gets 429 with Retry-After.
+ *
+ * The client IP is the remote address, which Tomcat takes from X-Forwarded-For behind the load
+ * balancer (server.forward-headers-strategy). Limits are per instance.
+ */
+@Component
+@Profile("!reactive")
+public class AdmissionControlFilter extends OncePerRequestFilter implements Ordered {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static final String SIGNUP_PATH = "/v1/user";
+    private static final String DELETE_PATH = "/v1/user/self";
+    private static final byte[] REJECTED_BODY = "Too many requests; try again later".getBytes(StandardCharsets.UTF_8);
+
+    private final boolean enabled;
+    private final TokenBuckets clientBuckets;
+    private final TokenBuckets globalBucket;
+    private final int maxConcurrent;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Microsecond clock for the buckets; starts above 0, since 0 marks an unused slot
+    private final long clockOrigin = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+    private final Counter clientRejected;
+    private final Counter globalRejected;
+    private final Counter concurrencyRejected;
+
+    public AdmissionControlFilter(MeterRegistry meterRegistry,
+                                  @Value("${admission.enabled:true}") boolean enabled,
+                                  @Value("${admission.client.requests-per-minute:10}") double clientPerMinute,
+                                  @Value("${admission.client.burst:5}") int clientBurst,
+                                  @Value("${admission.client.table-size:65536}") int clientTableSize,
+                                  @Value("${admission.global.requests-per-second:50}") double globalPerSecond,
+                                  @Value("${admission.global.burst:100}") int globalBurst,
+                                  @Value("${admission.max-concurrent:32}") int maxConcurrent) {
+        this.enabled = enabled;
+        this.clientBuckets = new TokenBuckets(clientTableSize, clientPerMinute / 60, clientBurst);
+        this.globalBucket = new TokenBuckets(1, globalPerSecond, globalBurst);
+        this.maxConcurrent = maxConcurrent;
+
+        this.clientRejected = Counter.builder("admission.rejected").tag("limit", "client")
+                .description("Requests shed with 429 before any work").register(meterRegistry);
+        this.globalRejected = Counter.builder("admission.rejected").tag("limit", "global")
+                .description("Requests shed with 429 before any work").register(meterRegistry);
+        this.concurrencyRejected = Counter.builder("admission.rejected").tag("limit", "concurrency")
+                .description("Requests shed with 429 before any work").register(meterRegistry);
+        Gauge.builder("admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Admitted requests still being handled")
+                .register(meterRegistry);
+    }
+
+    // Ahead of the Spring Security filter chain, behind the observation filter so 429s are still timed
+    @Override
+    public int getOrder() {
+        return SecurityProperties.DEFAULT_FILTER_ORDER - 10;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return !(HttpMethod.POST.matches(request.getMethod()) && SIGNUP_PATH.equals(path))
+                && !(HttpMethod.DELETE.matches(request.getMethod()) && DELETE_PATH.equals(path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = (System.nanoTime() - clockOrigin) / 1000;
+
+        // The client's own bucket first, so one client cannot drain the global one
+        long wait = clientBuckets.tryAcquire(TokenBuckets.mix(request.getRemoteAddr().hashCode()), now);
+        if (wait > 0) {
+            clientRejected.increment();
+            reject(response, wait);
+            return;
+        }
+        wait = globalBucket.tryAcquire(0, now);
+        if (wait > 0) {
+            globalRejected.increment();
+            reject(response, wait);
+            return;
+        }
+        if (!tryEnter()) {
+            concurrencyRejected.increment();
+            reject(response, TimeUnit.SECONDS.toMicros(1));
+            return;
+        }
+
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            // Signups complete on the hashing pool; the slot is held until the response is written
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ExitListener());
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private boolean tryEnter() {
+        int current;
+        while ((current = inFlight.get()) < maxConcurrent) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void reject(HttpServletResponse response, long waitMicros) throws IOException {
+        long retryAfter = Math.max(1, TimeUnit.MICROSECONDS.toSeconds(waitMicros + 999_999));
+        logger.debug("Shedding request; retry after {} s", retryAfter);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setContentLength(REJECTED_BODY.length);
+        response.getOutputStream().write(REJECTED_BODY);
+    }
+
+    // Exactly one of complete, error or timeout is followed by complete; release on complete only
+    private final class ExitListener implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            inFlight.decrementAndGet();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+
+@Configuration
+public class AwsClientConfig {
+
+    // Fetch the AWS region from application properties or environment variables
+    @Value("${aws.region:us-east-1}") // Default to "us-east-1" if not set
+    private String awsRegion;
+
+    // Points S3 at a local stand-in (MinIO, LocalStack) instead of AWS when set
+    @Value("${aws.s3.endpoint:}")
+    private String s3Endpoint;
+
+    @Value("${aws.s3.path-style-access:false}")
+    private boolean s3PathStyleAccess;
+
+    // One Netty event loop and connection pool shared by every async AWS client, so S3 and SNS
+    // calls reuse warm connections instead of each client keeping its own pool
+    @Bean
+    public SdkAsyncHttpClient awsHttpClient(@Value("${aws.http.max-concurrency:200}") int maxConcurrency,
+                                            @Value("${aws.http.max-pending-acquires:10000}") int maxPendingAcquires,
+                                            @Value("${aws.http.acquire-timeout-ms:5000}") long acquireTimeoutMs) {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .maxPendingConnectionAcquires(maxPendingAcquires)
+                .connectionAcquisitionTimeout(Duration.ofMillis(acquireTimeoutMs))
+                .connectionMaxIdleTime(Duration.ofSeconds(60))
+                .useIdleConnectionReaper(true)
+                .tcpKeepAlive(true)
+                .build();
+    }
+
+    // Callbacks chained onto AWS futures (e.g. saving the user after an S3 upload) block on JDBC.
+    // In virtual-thread mode they run on virtual threads instead of the SDK's small completion pool.
+    @Bean
+    public ClientAsyncConfiguration awsAsyncConfiguration(Environment environment) {
+        ClientAsyncConfiguration.Builder builder = ClientAsyncConfiguration.builder();
+        if (Threading.VIRTUAL.isActive(environment)) {
+            builder.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR,
+                    new VirtualThreadTaskExecutor("aws-completion-"));
+        }
+        return builder.build();
+    }
+
+    // Per-call latency and error metrics for every AWS client
+    @Bean
+    public ClientOverrideConfiguration awsOverrideConfiguration(MeterRegistry meterRegistry) {
+        return ClientOverrideConfiguration.builder()
+                .addMetricPublisher(new AwsSdkMetricPublisher(meterRegistry))
+                .build();
+    }
+
+    @Bean
+    public S3AsyncClient s3Client(SdkAsyncHttpClient awsHttpClient,
+                                  ClientAsyncConfiguration awsAsyncConfiguration,
+                                  ClientOverrideConfiguration awsOverrideConfiguration) {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(DefaultCredentialsProvider.create()) // Automatically fetches credentials
+                .httpClient(awsHttpClient)
+                .asyncConfiguration(awsAsyncConfiguration)
+                .overrideConfiguration(awsOverrideConfiguration)
+                .forcePathStyle(s3PathStyleAccess);
+        if (!s3Endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(s3Endpoint));
+        }
+        return builder.build();
+    }
+
+    // Signs direct-upload URLs locally; it makes no calls itself
+    @Bean
+    public S3Presigner s3Presigner() {
+        S3Presigner.Builder builder = S3Presigner.builder()
+                .region(Region.of(awsRegion))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(s3PathStyleAccess).build());
+        if (!s3Endpoint.isEmpty()) {
+            builder.endpointOverride(URI.create(s3Endpoint));
+        }
+        return builder.build();
+    }
+}
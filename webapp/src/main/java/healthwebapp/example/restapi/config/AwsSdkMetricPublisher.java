@@ -0,0 +1,65 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Records every S3/SNS API call as aws.client.requests, tagged with service, operation, outcome
+ * and the SDK's error class of the last attempt (Throttling, ServerError, IO, ...).
+ * The duration covers the whole call including retries.
+ */
+class AwsSdkMetricPublisher implements MetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+
+    AwsSdkMetricPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(MetricCollection metrics) {
+        Duration duration = first(metrics.metricValues(CoreMetric.API_CALL_DURATION));
+        if (duration == null) {
+            return;
+        }
+        Boolean successful = first(metrics.metricValues(CoreMetric.API_CALL_SUCCESSFUL));
+
+        Timer.builder("aws.client.requests")
+                .tag("service", valueOrUnknown(first(metrics.metricValues(CoreMetric.SERVICE_ID))))
+                .tag("operation", valueOrUnknown(first(metrics.metricValues(CoreMetric.OPERATION_NAME))))
+                .tag("outcome", Boolean.TRUE.equals(successful) ? "success" : "error")
+                .tag("error", Boolean.TRUE.equals(successful) ? "none" : lastErrorType(metrics))
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    // Error types are reported per attempt; the last attempt decided the outcome
+    private static String lastErrorType(MetricCollection metrics) {
+        String errorType = null;
+        for (MetricCollection attempt : metrics.children()) {
+            String attemptError = first(attempt.metricValues(CoreMetric.ERROR_TYPE));
+            if (attemptError != null) {
+                errorType = attemptError;
+            }
+        }
+        return valueOrUnknown(errorType);
+    }
+
+    private static <T> T first(List<T> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+
+    private static String valueOrUnknown(String value) {
+        return value == null ? "unknown" : value;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -1,11 +1,14 @@
 package healthwebapp.example.restapi.config;
 
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.AmazonSNSClientBuilder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
 
 @Configuration
 public class AwsSnsConfig {
@@ -15,15 +18,20 @@ public class AwsSnsConfig {
     private String awsRegion;
 
     @Bean
-    public AmazonSNS snsClient() {
+    public SnsAsyncClient snsClient(SdkAsyncHttpClient awsHttpClient,
+                                    ClientAsyncConfiguration awsAsyncConfiguration,
+                                    ClientOverrideConfiguration awsOverrideConfiguration) {
         if (awsRegion == null || awsRegion.trim().isEmpty()) {
             throw new IllegalStateException("AWS region is not configured or is empty");
         }
 
-        // Create and return the AmazonSNS client
-        return AmazonSNSClientBuilder.standard()
-                .withRegion(awsRegion) // Dynamically sets region
-                .withCredentials(new DefaultAWSCredentialsProviderChain()) // Automatically fetches credentials
+        // Create and return the async SNS client on the shared HTTP client
+        return SnsAsyncClient.builder()
+                .region(Region.of(awsRegion)) // Dynamically sets region
+                .credentialsProvider(DefaultCredentialsProvider.create()) // Automatically fetches credentials
+                .httpClient(awsHttpClient)
+                .asyncConfiguration(awsAsyncConfiguration)
+                .overrideConfiguration(awsOverrideConfiguration)
                 .build();
     }
 }
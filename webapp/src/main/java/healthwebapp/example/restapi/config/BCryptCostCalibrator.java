@@ -0,0 +1,50 @@
+package healthwebapp.example.restapi.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Picks the BCrypt cost for new hashes by timing this machine at startup: the highest cost whose hash
+ * is expected to take no longer than the target, within [minCost, maxCost]. Every step of cost doubles
+ * the work, so only the minimum cost is timed and the rest is extrapolated.
+ */
+final class BCryptCostCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BCryptCostCalibrator.class);
+
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+    private static final int WARMUP_HASHES = 2;
+    private static final int TIMED_HASHES = 3;
+
+    private BCryptCostCalibrator() {
+    }
+
+    static int calibrate(Duration target, int minCost, int maxCost) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(minCost);
+        // The first hashes also pay for class loading and JIT compilation
+        for (int i = 0; i < WARMUP_HASHES; i++) {
+            encoder.encode(SAMPLE_PASSWORD);
+        }
+        long[] samples = new long[TIMED_HASHES];
+        for (int i = 0; i < TIMED_HASHES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        long nanos = samples[TIMED_HASHES / 2];
+
+        int cost = minCost;
+        while (cost < maxCost && nanos * 2 <= target.toNanos()) {
+            nanos *= 2;
+            cost++;
+        }
+        logger.info("BCrypt cost {} for new password hashes (about {} ms each, target {} ms)",
+                cost, nanos / 1_000_000, target.toMillis());
+        return cost;
+    }
+}
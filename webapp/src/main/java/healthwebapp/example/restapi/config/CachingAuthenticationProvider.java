@@ -0,0 +1,62 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.service.CredentialCache;
+import healthwebapp.example.restapi.service.PasswordHashingService;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+
+/**
+ * DaoAuthenticationProvider that consults the CredentialCache before running the BCrypt check.
+ * Outdated hashes are upgraded on the PasswordHashingService pool after the login succeeds, rather
+ * than synchronously as DaoAuthenticationProvider would with a UserDetailsPasswordService set.
+ */
+public class CachingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final CredentialCache credentialCache;
+    private final PasswordHashingService passwordHashingService;
+    private final UserDetailsPasswordService passwordUpgrades;
+
+    public CachingAuthenticationProvider(CredentialCache credentialCache,
+                                         PasswordHashingService passwordHashingService,
+                                         UserDetailsPasswordService passwordUpgrades) {
+        this.credentialCache = credentialCache;
+        this.passwordHashingService = passwordHashingService;
+        this.passwordUpgrades = passwordUpgrades;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails,
+                                                  UsernamePasswordAuthenticationToken authentication)
+            throws AuthenticationException {
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            super.additionalAuthenticationChecks(userDetails, authentication);
+            return;
+        }
+
+        String presentedPassword = credentials.toString();
+        if (credentialCache.matches(userDetails.getUsername(), presentedPassword, userDetails.getPassword())) {
+            return;
+        }
+
+        // Full BCrypt check; only successful verifications are cached
+        super.additionalAuthenticationChecks(userDetails, authentication);
+        credentialCache.put(userDetails.getUsername(), presentedPassword, userDetails.getPassword());
+    }
+
+    @Override
+    protected Authentication createSuccessAuthentication(Object principal, Authentication authentication, UserDetails user) {
+        // The login does not wait for the new hash; until it is stored the old one keeps working.
+        // Upgrades get a copy, since the ProviderManager erases the password from user afterwards.
+        Object credentials = authentication.getCredentials();
+        if (credentials != null && getPasswordEncoder().upgradeEncoding(user.getPassword())) {
+            passwordHashingService.upgrade(User.withUserDetails(user).build(), credentials.toString(), passwordUpgrades);
+        }
+        return super.createSuccessAuthentication(principal, authentication, user);
+    }
+}
@@ -0,0 +1,86 @@
+package healthwebapp.example.restapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Connection pools. The primary pool takes spring.datasource.* as before; an optional read-only pool
+ * is created when db.replica.url is set, and the application DataSource then routes read-only
+ * transactions to it. Both pools are sized from the core count and the request thread count unless
+ * spring.datasource.hikari.maximum-pool-size is set, and both get the same spring.datasource.hikari.*
+ * tuning. Boot binds the hikaricp.* pool metrics for each, tagged with the pool name.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    static final String PRIMARY_POOL = "primary";
+    static final String REPLICA_POOL = "replica";
+
+    private static final int MIN_POOL_SIZE = 4;
+
+    private final int poolSize;
+
+    public DataSourceConfig(@Value("${db.pool.cores:0}") int cores,
+                            @Value("${server.tomcat.threads.max:200}") int requestThreads,
+                            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.poolSize = poolSize(cores > 0 ? cores : Runtime.getRuntime().availableProcessors(),
+                virtualThreads ? Integer.MAX_VALUE : requestThreads);
+    }
+
+    // Past 2 x cores + 1 extra connections only queue inside Postgres, and a pool larger than the
+    // request thread count can never be fully used; the floor leaves room for the outbox dispatcher
+    // and the token sweeper on single-core instances
+    static int poolSize(int cores, int requestThreads) {
+        return Math.max(MIN_POOL_SIZE, Math.min(cores * 2 + 1, requestThreads));
+    }
+
+    // Properties bound after this method returns win over the computed size. Migrations always run here.
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(PRIMARY_POOL);
+        dataSource.setMaximumPoolSize(poolSize);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty("db.replica.url")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${db.replica.url}") String url,
+                                              @Value("${db.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${db.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(REPLICA_POOL);
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    // What JPA and the repositories use when a replica is configured
+    @Bean
+    @Primary
+    @ConditionalOnProperty("db.replica.url")
+    public DataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                        @Qualifier("replicaDataSource") DataSource replica) {
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replica));
+    }
+}
@@ -0,0 +1,67 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.config.NamingConvention;
+import io.micrometer.core.instrument.util.HierarchicalNameMapper;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps Micrometer meters onto the flat csye6225.* StatsD names the CloudWatch dashboards were
+ * built on. Endpoint timings keep their endpoint.user.<op>.time names (non-successful requests
+ * get the outcome spliced in, e.g. endpoint.user.get.client_error.time); request counts are the
+ * sample count of the timing metric. Other meters become their name followed by their tag values,
+ * so auth.cache{result=hit} is published as csye6225.auth.cache.hit.
+ */
+public class LegacyStatsdNameMapper implements HierarchicalNameMapper {
+
+    private static final String PREFIX = "csye6225.";
+    private static final String HTTP_SERVER_REQUESTS = "http.server.requests";
+    private static final String STATISTIC = "statistic";
+    private static final Set<String> PLAIN_STATISTICS = Set.of("count", "value");
+
+    private static final Map<String, String> ENDPOINTS = Map.of(
+            "POST /v1/user", "endpoint.user.create",
+            "GET /v1/user/self", "endpoint.user.get",
+            "PUT /v1/user/self", "endpoint.user.update",
+            "DELETE /v1/user/self", "endpoint.user.delete",
+            "GET /v1/user/verify", "endpoint.user.verify",
+            "POST /v1/user/self/pic", "endpoint.user.pic.upload",
+            "DELETE /v1/user/self/pic", "endpoint.user.pic.delete",
+            "GET /healthz", "endpoint.healthz"
+    );
+
+    @Override
+    public String toHierarchicalName(Meter.Id id, NamingConvention convention) {
+        if (HTTP_SERVER_REQUESTS.equals(id.getName())) {
+            return PREFIX + endpointName(id);
+        }
+
+        StringBuilder name = new StringBuilder(PREFIX).append(id.getName());
+        for (Tag tag : id.getTagsAsIterable()) {
+            // The registry tags plain counters and gauges with statistic=count/value; legacy names had no suffix
+            if (STATISTIC.equals(tag.getKey()) && PLAIN_STATISTICS.contains(tag.getValue())) {
+                continue;
+            }
+            name.append('.').append(sanitize(tag.getValue()));
+        }
+        return name.toString();
+    }
+
+    private static String endpointName(Meter.Id id) {
+        String endpoint = ENDPOINTS.getOrDefault(id.getTag("method") + " " + id.getTag("uri"), "endpoint.other");
+        String outcome = id.getTag("outcome");
+        if (outcome == null || "SUCCESS".equals(outcome)) {
+            return endpoint + ".time";
+        }
+        return endpoint + "." + outcome.toLowerCase(Locale.ROOT) + ".time";
+    }
+
+    // ':' and '|' delimit the StatsD line protocol; keep names to a safe character set
+    private static String sanitize(String value) {
+        return value.replaceAll("[^A-Za-z0-9_\\-]", "_");
+    }
+}
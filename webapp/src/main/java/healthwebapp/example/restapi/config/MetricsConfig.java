@@ -1,19 +1,55 @@
 package healthwebapp.example.restapi.config;
 
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.statsd.StatsdConfig;
+import io.micrometer.statsd.StatsdMeterRegistry;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.ConditionalOnEnabledMetricsExport;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import com.timgroup.statsd.NonBlockingStatsDClient;
-import com.timgroup.statsd.StatsDClient;
+import java.util.Set;
 
 @Configuration
 public class MetricsConfig {
+
+    // Meters forwarded to the CloudWatch agent; everything else is only scraped through Prometheus,
+    // since every StatsD name becomes a billed CloudWatch metric
+    private static final String[] STATSD_METER_PREFIXES = {"admission.", "auth.", "outbox."};
+
+    // Connection pool meters behind the CloudWatch pool alarms; exact names, so the histogram bucket
+    // gauges registered alongside the acquire timer stay in Prometheus
+    private static final Set<String> STATSD_METER_NAMES = Set.of(
+            "hikaricp.connections.acquire", "hikaricp.connections.pending", "hikaricp.connections.timeout");
+
+    // StatsD bridge to the CloudWatch agent on localhost:8125, publishing under the legacy
+    // csye6225.* names so the existing dashboards keep working
     @Bean
-    public StatsDClient statsDClient() {
-        return new NonBlockingStatsDClient(
-                "csye6225", // prefix for application
-                "localhost",
-                8125
-        );
+    @ConditionalOnEnabledMetricsExport("statsd")
+    public StatsdMeterRegistry statsdMeterRegistry(StatsdConfig statsdConfig, Clock clock) {
+        StatsdMeterRegistry registry = StatsdMeterRegistry.builder(statsdConfig)
+                .clock(clock)
+                .nameMapper(new LegacyStatsdNameMapper())
+                .build();
+        registry.config()
+                .meterFilter(MeterFilter.denyUnless(MetricsConfig::forwardToStatsd));
+        return registry;
+    }
+
+    private static boolean forwardToStatsd(Meter.Id id) {
+        if ("http.server.requests".equals(id.getName())) {
+            String uri = id.getTag("uri");
+            return uri == null || !uri.startsWith("/actuator");
+        }
+        if (STATSD_METER_NAMES.contains(id.getName())) {
+            return true;
+        }
+        for (String prefix : STATSD_METER_PREFIXES) {
+            if (id.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
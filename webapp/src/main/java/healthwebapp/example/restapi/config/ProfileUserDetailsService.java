@@ -0,0 +1,41 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.service.UserProfileCache;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Basic-auth user lookup, served from the profile cache; the handler reuses the same snapshot for the request.
+ * Not a bean: it is handed to CachingAuthenticationProvider, which Spring Security then uses on its own.
+ */
+public class ProfileUserDetailsService implements UserDetailsService {
+
+    private static final List<GrantedAuthority> ADMIN_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    private final UserProfileCache userProfileCache;
+    private final Set<String> adminEmails;
+
+    public ProfileUserDetailsService(UserProfileCache userProfileCache, Set<String> adminEmails) {
+        this.userProfileCache = userProfileCache;
+        this.adminEmails = adminEmails;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        UserProfile user = userProfileCache.getByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
+        return User.builder()
+                .username(user.email())
+                .password(user.password())
+                .authorities(adminEmails.contains(user.email()) ? ADMIN_AUTHORITIES : List.of())
+                .build();
+    }
+}
@@ -0,0 +1,118 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every JDBC statement into the db.query timer, tagged with the pool it ran on, the repository
+ * method that issued it and the statement type, so each query shape gets its own latency histogram.
+ * Statements at or above the slow threshold are logged as one key=value line; faster ones only for
+ * a random sample. Bind parameter values never reach the log, only their count and Java types.
+ */
+class QueryExecutionMetrics implements QueryExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryExecutionMetrics.class);
+
+    private static final int MAX_SQL_LENGTH = 2000;
+
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdMs;
+    private final double sampleRate;
+
+    QueryExecutionMetrics(MeterRegistry meterRegistry, long slowThresholdMs, double sampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMs = slowThresholdMs;
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        String origin = RepositoryOrigin.current();
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        String type = statementType(sql);
+        long elapsedMs = execInfo.getElapsedTime();
+
+        Timer.builder("db.query")
+                .description("JDBC statement execution time")
+                .tag("datasource", execInfo.getDataSourceName())
+                .tag("origin", origin)
+                .tag("type", type)
+                .tag("outcome", execInfo.isSuccess() ? "success" : "error")
+                .register(meterRegistry)
+                .record(elapsedMs, TimeUnit.MILLISECONDS);
+
+        if (elapsedMs >= slowThresholdMs) {
+            logger.warn("event=slow_query {}", describe(execInfo, queryInfoList, origin, type, sql));
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            logger.info("event=sampled_query {}", describe(execInfo, queryInfoList, origin, type, sql));
+        }
+    }
+
+    private String describe(ExecutionInfo execInfo, List<QueryInfo> queryInfoList, String origin, String type, String sql) {
+        return "elapsed_ms=" + execInfo.getElapsedTime()
+                + " threshold_ms=" + slowThresholdMs
+                + " datasource=" + execInfo.getDataSourceName()
+                + " origin=" + origin
+                + " type=" + type
+                + " success=" + execInfo.isSuccess()
+                + " batch_size=" + (execInfo.isBatch() ? execInfo.getBatchSize() : 1)
+                + " statements=" + queryInfoList.size()
+                + " params=" + parameterTypes(queryInfoList)
+                + " sql=\"" + truncate(sql).replace('"', '\'').replaceAll("\\s+", " ") + "\"";
+    }
+
+    // "[String,Long]" for the first parameter set; values are redacted by never being read out
+    static String parameterTypes(List<QueryInfo> queryInfoList) {
+        StringJoiner types = new StringJoiner(",", "[", "]");
+        if (queryInfoList.isEmpty() || queryInfoList.get(0).getParametersList().isEmpty()) {
+            return types.toString();
+        }
+        for (ParameterSetOperation operation : queryInfoList.get(0).getParametersList().get(0)) {
+            Object[] args = operation.getArgs();
+            if (ParameterSetOperation.isSetNullParameterOperation(operation) || args.length < 2 || args[1] == null) {
+                types.add("null");
+            } else {
+                types.add(args[1].getClass().getSimpleName());
+            }
+        }
+        return types.toString();
+    }
+
+    static String statementType(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String keyword = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        switch (keyword) {
+            case "select":
+            case "insert":
+            case "update":
+            case "delete":
+                return keyword;
+            default:
+                return "other";
+        }
+    }
+
+    private static String truncate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+}
@@ -0,0 +1,57 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+
+// Replaces spring.jpa.show-sql: statements are timed per repository method and only slow or sampled
+// ones are logged (see QueryExecutionMetrics)
+@Configuration
+public class QueryLoggingConfig {
+
+    // Wrap each Hikari pool in a datasource-proxy; unwrap() still reaches Hikari for the pool metrics.
+    // The replica routing proxy delegates to pools that are wrapped themselves, so it is left alone.
+    @Bean
+    public static BeanPostProcessor queryLoggingDataSourcePostProcessor(
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${db.query.slow-threshold-ms:200}") long slowThresholdMs,
+            @Value("${db.query.log-sample-rate:0}") double sampleRate) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource
+                        || bean instanceof DelegatingDataSource) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create(beanName, dataSource)
+                        .listener(new QueryExecutionMetrics(meterRegistry.getObject(), slowThresholdMs, sampleRate))
+                        .build();
+            }
+        };
+    }
+
+    // Tag every repository call with its method name before the repository is created
+    @Bean
+    public static BeanPostProcessor repositoryOriginPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(
+                                    new RepositoryOrigin(repositoryInformation.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+}
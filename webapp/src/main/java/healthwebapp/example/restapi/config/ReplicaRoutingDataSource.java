@@ -0,0 +1,36 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.service.ReadYourWrites;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends @Transactional(readOnly = true) work to the replica pool and everything else (writes,
+ * non-transactional JDBC such as Flyway) to the primary. The read-only flag is only known once the
+ * transaction has started, so this must sit behind a LazyConnectionDataSourceProxy that defers
+ * picking a connection until the first statement.
+ */
+class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !ReadYourWrites.isPinnedToPrimary()) {
+            return Target.REPLICA;
+        }
+        return Target.PRIMARY;
+    }
+}
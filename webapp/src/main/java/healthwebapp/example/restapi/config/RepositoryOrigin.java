@@ -0,0 +1,41 @@
+package healthwebapp.example.restapi.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+/**
+ * Remembers which repository method the current thread is executing, e.g. "UserRepository.findByEmail",
+ * so JDBC statements can be attributed to it. Installed as advice on every Spring Data repository
+ * proxy; the outermost repository call wins when one repository method calls another.
+ */
+final class RepositoryOrigin implements MethodInterceptor {
+
+    static final String NONE = "none";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private final String repositoryName;
+
+    RepositoryOrigin(Class<?> repositoryInterface) {
+        this.repositoryName = repositoryInterface.getSimpleName();
+    }
+
+    // Repository method on this thread, or NONE for Hibernate internals, Flyway and plain JDBC
+    static String current() {
+        String origin = CURRENT.get();
+        return origin != null ? origin : NONE;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (CURRENT.get() != null) {
+            return invocation.proceed();
+        }
+        CURRENT.set(repositoryName + "." + invocation.getMethod().getName());
+        try {
+            return invocation.proceed();
+        } finally {
+            CURRENT.remove();
+        }
+    }
+}
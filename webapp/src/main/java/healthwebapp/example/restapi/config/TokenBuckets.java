@@ -0,0 +1,69 @@
+package healthwebapp.example.restapi.config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed table of token buckets, one long per slot, updated with compare-and-set only. Each slot
+ * holds a bucket in GCRA form: the time at which it will be full again, in microseconds, with a tag
+ * of the key in the low bits. Keys are spread over the slots by hash; a key whose tag differs from
+ * the slot's takes the slot over with a full bucket, so memory stays at size longs however many keys
+ * there are, and a collision can only ever let extra requests through, never block a client.
+ */
+final class TokenBuckets {
+
+    private static final int TAG_BITS = 16;
+    private static final long TAG_MASK = (1L << TAG_BITS) - 1;
+
+    private final AtomicLongArray slots;
+    private final int indexMask;
+    private final long intervalMicros;
+    private final long toleranceMicros;
+
+    // size is rounded up to a power of two; burst requests may go through at once after a quiet period
+    TokenBuckets(int size, double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token buckets need a positive rate and a burst of at least 1");
+        }
+        int slotCount = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.slots = new AtomicLongArray(slotCount);
+        this.indexMask = slotCount - 1;
+        this.intervalMicros = Math.max(1, Math.round(1_000_000 / permitsPerSecond));
+        this.toleranceMicros = intervalMicros * burst;
+    }
+
+    /**
+     * Takes a permit from the bucket of key at nowMicros (positive, below 2^48). Returns 0 when one
+     * was taken, otherwise the microseconds until one will be available.
+     */
+    long tryAcquire(long key, long nowMicros) {
+        int index = (int) key & indexMask;
+        long tag = (key >>> 48) & TAG_MASK;
+        while (true) {
+            long slot = slots.get(index);
+            long fullAt = (slot & TAG_MASK) == tag ? slot >>> TAG_BITS : 0;
+            long next = Math.max(fullAt, nowMicros) + intervalMicros;
+            long wait = next - nowMicros - toleranceMicros;
+            if (wait > 0) {
+                return wait;
+            }
+            if (slots.compareAndSet(index, slot, (next << TAG_BITS) | tag)) {
+                return 0;
+            }
+        }
+    }
+
+    int size() {
+        return slots.length();
+    }
+
+    // Spreads a 32-bit hash over 64 bits (the MurmurHash3 finalizer), so index and tag are independent
+    static long mix(int hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,62 +1,120 @@
 package healthwebapp.example.restapi.config;
 
-import healthwebapp.example.restapi.entity.User;
 import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.service.AuthTokenService;
+import healthwebapp.example.restapi.service.CredentialCache;
+import healthwebapp.example.restapi.service.PasswordHashingService;
+import healthwebapp.example.restapi.service.UserProfileCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.core.userdetails.*;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.http.HttpMethod;
 
-import java.util.ArrayList;
-import java.util.Optional;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
 
 @Configuration
 public class WebSecurityConfig {
 
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
     @Autowired
     private UserRepository userRepository;
 
-    // Define the PasswordEncoder bean
+    @Autowired
+    private CredentialCache credentialCache;
+
+    // Accounts allowed to use the bulk import/export endpoints
+    @Value("${admin.emails:}")
+    private Set<String> adminEmails;
+
+    // BCrypt cost for new hashes; 0 picks the highest cost that hashes within hash-target-ms on this machine
+    @Value("${auth.password.bcrypt-cost:0}")
+    private int bcryptCost;
+
+    @Value("${auth.password.hash-target-ms:100}")
+    private long hashTargetMs;
+
+    @Value("${auth.password.min-bcrypt-cost:10}")
+    private int minBcryptCost;
+
+    @Value("${auth.password.max-bcrypt-cost:14}")
+    private int maxBcryptCost;
+
+    // New hashes are stored as {bcrypt}$2a$<cost>$..., recording the algorithm and cost with each hash.
+    // Hashes from before the prefix are plain BCrypt; they still match, and are upgraded on login.
     @Bean
     public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+        int cost = bcryptCost > 0
+                ? bcryptCost
+                : BCryptCostCalibrator.calibrate(Duration.ofMillis(hashTargetMs), minBcryptCost, maxBcryptCost);
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder("bcrypt",
+                Map.of("bcrypt", new BCryptPasswordEncoder(cost)));
+        encoder.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+        return encoder;
     }
 
-    // Define the UserDetailsService bean
+    // Stores a rehashed password, unless the password was changed since the login that produced it.
+    // Also used by the reactive profile's authentication manager (ReactiveWebConfig).
     @Bean
-    public UserDetailsService userDetailsService() {
-        return new UserDetailsService() {
-            @Override
-            public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-                Optional<User> userOptional = userRepository.findByEmail(email);
-                if (!userOptional.isPresent()) {
-                    throw new UsernameNotFoundException("User not found with email: " + email);
-                }
-                User user = userOptional.get();
-                return org.springframework.security.core.userdetails.User.builder()
-                        .username(user.getEmail())
-                        .password(user.getPassword())
-                        .authorities(new ArrayList<>()) // Add roles/authorities if needed
-                        .build();
+    public UserDetailsPasswordService userDetailsPasswordService() {
+        return (user, newPassword) -> {
+            if (userRepository.replacePasswordHash(user.getUsername(), user.getPassword(), newPassword) == 0) {
+                return user;
             }
+            credentialCache.invalidate(user.getUsername());
+            userProfileCache.getByEmail(user.getUsername())
+                    .ifPresent(profile -> userProfileCache.invalidate(profile.id(), profile.email()));
+            return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
         };
     }
 
+    // Basic-auth provider that skips BCrypt for recently verified credentials, and upgrades outdated
+    // hashes in the background after a successful login. Its user lookup is not a bean of its own,
+    // so the global AuthenticationManager is built from this provider alone.
+    @Bean
+    @Profile("!reactive")
+    public DaoAuthenticationProvider authenticationProvider(PasswordHashingService passwordHashingService) {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(credentialCache,
+                passwordHashingService, userDetailsPasswordService());
+        provider.setUserDetailsService(new ProfileUserDetailsService(userProfileCache, adminEmails));
+        provider.setPasswordEncoder(passwordEncoder());
+        return provider;
+    }
+
     // Define the AuthenticationManager bean
     @Bean
+    @Profile("!reactive")
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authConfig) throws Exception {
         return authConfig.getAuthenticationManager();
     }
 
     // Define the SecurityFilterChain bean
     @Bean
+    @Profile("!reactive")
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
                 // Disable CSRF as we're using stateless authentication
@@ -65,14 +123,38 @@ public class WebSecurityConfig {
                 // Define authorization rules
                 .authorizeHttpRequests(authorize -> authorize
                         .requestMatchers("/healthz").permitAll() // Public endpoint
+                        .requestMatchers(EndpointRequest.to("health", "prometheus")).permitAll() // Served on the management port
                         .requestMatchers(HttpMethod.POST, "/v1/user").permitAll() // Allow user registration without authentication
                         .requestMatchers(HttpMethod.DELETE, "/v1/user/self").permitAll() // Allow unauthenticated delete user request
+                        .requestMatchers(HttpMethod.POST, "/v1/user/token/refresh").permitAll() // Authenticated by the refresh token
+                        .requestMatchers("/v1/user/import", "/v1/user/export").hasRole("ADMIN") // Bulk endpoints
                         .anyRequest().authenticated() // All other endpoints require authentication
                 )
 
                 // Enable Basic Authentication
-                .httpBasic(org.springframework.security.config.Customizer.withDefaults());
+                .httpBasic(org.springframework.security.config.Customizer.withDefaults())
+
+                // Bearer access tokens from POST /v1/user/token, authenticated from their claims alone
+                .oauth2ResourceServer(oauth2 -> oauth2.jwt(jwt -> jwt
+                        .decoder(authTokenService.accessTokenDecoder())
+                        .jwtAuthenticationConverter(tokenAuthenticationConverter())));
 
         return http.build();
     }
+
+    // The token subject is the email, as with Basic; roles come from the token, not admin.emails.
+    // A token whose account was deleted is rejected, even when the email has been registered again.
+    private Converter<Jwt, AbstractAuthenticationToken> tokenAuthenticationConverter() {
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName(AuthTokenService.ROLES_CLAIM);
+        authorities.setAuthorityPrefix("ROLE_");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return jwt -> {
+            if (authTokenService.accountOf(jwt).isEmpty()) {
+                throw new InvalidBearerTokenException("Token was issued to an account that no longer exists");
+            }
+            return converter.convert(jwt);
+        };
+    }
 }
@@ -0,0 +1,111 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.dto.RefreshTokenRequest;
+import healthwebapp.example.restapi.dto.TokenResponse;
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.service.AuthTokenService;
+import healthwebapp.example.restapi.service.UserService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.validation.BindingResult;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Optional;
+
+// Bearer tokens for /v1/user/**, so steady-state requests skip BCrypt; see AuthTokenService
+@RestController
+@Profile("!reactive")
+@RequestMapping("/v1/user/token")
+public class AuthTokenController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthTokenController.class);
+
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    private final AuthTokenService authTokenService;
+    private final UserService userService;
+
+    public AuthTokenController(AuthTokenService authTokenService, UserService userService) {
+        this.authTokenService = authTokenService;
+        this.userService = userService;
+    }
+
+    // Exchange Basic credentials for an access and a refresh token
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TokenResponse> issueTokens(Authentication authentication) {
+        // Only a password login starts a session; a bearer token cannot extend itself
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)) {
+            logger.warn("Token request without password credentials from: {}", authentication.getName());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        Optional<UserProfile> user = userService.findProfileByEmail(authentication.getName());
+        if (user.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!user.get().verified()) {
+            logger.warn("Token request blocked for unverified user: {}", authentication.getName());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        List<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(authority -> authority.startsWith(ROLE_PREFIX))
+                .map(authority -> authority.substring(ROLE_PREFIX.length()))
+                .toList();
+        logger.info("Issuing tokens for: {}", authentication.getName());
+        return tokens(authTokenService.issue(user.get(), roles));
+    }
+
+    // A new access token for a refresh token; needs no Authorization header
+    @PostMapping(value = "/refresh", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<TokenResponse> refreshTokens(@Valid @RequestBody RefreshTokenRequest body, BindingResult result) {
+        if (result.hasErrors()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        return authTokenService.refresh(body.refreshToken())
+                .map(this::tokens)
+                .orElseGet(() -> {
+                    logger.warn("Rejected refresh token");
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+                });
+    }
+
+    // Logout: revokes the access token used for this request and, when given, the refresh token
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revokeTokens(Authentication authentication,
+                                             @RequestBody(required = false) RefreshTokenRequest body) {
+        if (authentication instanceof JwtAuthenticationToken bearer) {
+            authTokenService.revoke(bearer.getToken());
+        }
+        if (body != null && body.refreshToken() != null
+                && !authTokenService.revokeRefreshToken(body.refreshToken(), authentication.getName())) {
+            logger.warn("Invalid refresh token in revocation by: {}", authentication.getName());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        logger.info("Tokens revoked for: {}", authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Token responses must not be stored (RFC 6749, section 5.1)
+    private ResponseEntity<TokenResponse> tokens(AuthTokenService.IssuedTokens tokens) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(new TokenResponse(tokens.accessToken(), "Bearer", tokens.accessTtl().toSeconds(),
+                        tokens.refreshToken(), tokens.refreshTtl().toSeconds()));
+    }
+}
@@ -0,0 +1,50 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.dto.UserImportResult;
+import healthwebapp.example.restapi.service.UserBulkService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+
+// Bulk onboarding and export for administrators (admin.emails); see UserBulkService
+@RestController
+@Profile("!reactive")
+@RequestMapping("/v1/user")
+public class UserBulkController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBulkController.class);
+
+    private final UserBulkService userBulkService;
+
+    public UserBulkController(UserBulkService userBulkService) {
+        this.userBulkService = userBulkService;
+    }
+
+    // One user per line, same fields as POST /v1/user; the body is read as it arrives
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<UserImportResult> importUsers(HttpServletRequest request) throws IOException {
+        logger.info("Received bulk user import");
+        UserImportResult result = userBulkService.importUsers(request.getInputStream());
+        logger.info("Bulk import finished: {} imported, {} rejected", result.imported(), result.rejected());
+        return ResponseEntity.ok(result);
+    }
+
+    // Streamed from a database cursor after the handler returns
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        logger.info("Received bulk user export");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(userBulkService::exportUsers);
+    }
+}
@@ -1,10 +1,21 @@
 package healthwebapp.example.restapi.controller;
 
+import healthwebapp.example.restapi.dto.PictureUploadConfirmation;
+import healthwebapp.example.restapi.dto.PictureUploadRequest;
+import healthwebapp.example.restapi.dto.PictureUploadResponse;
 import healthwebapp.example.restapi.dto.UserDTO;
-import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import healthwebapp.example.restapi.dto.UserProfile;
 import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.service.CustomS3Service;
 import healthwebapp.example.restapi.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -12,116 +23,94 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
-import com.amazonaws.services.sns.AmazonSNS;
-import com.amazonaws.services.sns.model.PublishRequest;
-import com.amazonaws.services.sns.model.PublishResult;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import com.timgroup.statsd.StatsDClient;
+import org.springframework.web.filter.ServerHttpObservationFilter;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletDiskFileUpload;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.model.S3Exception;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.io.InputStream;
+import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/v1/user")
 public class UserController {
 
-    @Autowired
-    private AmazonSNS snsClient;
-
     @Autowired
     private UserService userService;
 
+    // Continuations run here rather than on the thread that completed the future; after a password hash
+    // that is the bounded hashing pool, whose threads should spend their time hashing, not waiting on JDBC
     @Autowired
-    private StatsDClient statsDClient;
+    @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private Executor requestExecutor;
 
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
+    // Form field that carries the profile picture in multipart uploads
+    private static final String PROFILE_PIC_PART = "profilePic";
+
+    // Streaming parser: parts are read straight from the request body, nothing is staged on disk
+    private final JakartaServletDiskFileUpload multipartParser = new JakartaServletDiskFileUpload();
+
     // Create a new user
     @PostMapping
-    public ResponseEntity<?> createUser(@Valid @RequestBody User user, BindingResult result) {
-        long startTime = System.currentTimeMillis();
+    public CompletableFuture<ResponseEntity<?>> createUser(@Valid @RequestBody User user, BindingResult result) {
         logger.info("Received request to create a new user");
 
         // Check for validation errors
         if (result.hasErrors()) {
             logger.warn("Invalid request data for creating user: {}", result.getFieldErrors());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid request data");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid request data"));
         }
 
-        // Check if the email is already in use
-        Optional<User> existingUser = userService.findByEmail(user.getEmail());
-        if (existingUser.isPresent()) {
+        // Check if the email is already in use; usually answered by the email filter without a query
+        if (userService.isEmailInUse(user.getEmail())) {
             logger.warn("Email already in use: {}", user.getEmail());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email already in use");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email already in use"));
         }
 
-        // Generate verification token
-        String verificationToken = UUID.randomUUID().toString();
-        LocalDateTime tokenExpirationTime = LocalDateTime.now().plusMinutes(10);
-        user.setVerificationToken(verificationToken);
-        user.setTokenExpirationTime(tokenExpirationTime);
+        // New accounts stay unverified until the emailed token is redeemed
         user.setVerified(false);
 
-        // Hash the password before saving
-        user.setPassword(userService.encodePassword(user.getPassword()));
-
-        // Create and save the new user
-        User createdUser = userService.createUser(user);
-        logger.info("New user created with ID: {}, email: {}", createdUser.getId(), createdUser.getEmail());
-
-        try {
-            // Create the payload for the verification email
-            UserVerificationPayload messagePayload = new UserVerificationPayload(
-                    createdUser.getId(),
-                    createdUser.getEmail(),
-                    verificationToken,
-                    tokenExpirationTime
-            );
-
-            // Convert the payload to JSON format
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.registerModule(new JavaTimeModule());
-            String messageJson = mapper.writeValueAsString(messagePayload);
-            logger.info("Message payload for SNS: {}", messageJson);
-
-            // Publish the message to the SNS topic
-            String snsTopicArn = System.getenv("SNS_TOPIC_ARN");
-            logger.info("Using SNS Topic ARN: {}", snsTopicArn);
-
-            PublishRequest publishRequest = new PublishRequest()
-                    .withTopicArn(snsTopicArn)
-                    .withMessage(messageJson);
-
-            PublishResult publishResult = snsClient.publish(publishRequest);
-            logger.info("SNS message published successfully. Message ID: {}", publishResult.getMessageId());
-        } catch (Exception e) {
-            logger.error("Error publishing SNS message: {}", e.getMessage(), e);
-
-            // Suggest enabling CloudWatch SNS logs for further debugging
-            logger.info("If the issue persists, enable CloudWatch logging for the SNS topic.");
-            logger.info("Steps: Go to the AWS SNS Console > Select your Topic > Enable CloudWatch Logs.");
-            logger.info("Inspect the logs for delivery errors or message processing issues.");
-
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to send verification email due to: " + e.getMessage());
-        }
-
-        long endTime = System.currentTimeMillis();
-        statsDClient.recordExecutionTime("endpoint.user.create.time", endTime - startTime);
-        statsDClient.incrementCounter("endpoint.user.create.count");
-
-        return ResponseEntity.status(HttpStatus.CREATED).build();
+        // Hash the password on the hashing pool; the request thread is released meanwhile
+        return userService.encodePassword(user.getPassword())
+                .<ResponseEntity<?>>thenApplyAsync(encodedPassword -> {
+                    user.setPassword(encodedPassword);
+
+                    // Create and save the new user; the verification message is queued in the outbox
+                    User createdUser;
+                    try {
+                        createdUser = userService.createUser(user);
+                    } catch (DataIntegrityViolationException e) {
+                        // Registered concurrently or elsewhere since the filter last saw the table
+                        if (userService.findByEmail(user.getEmail()).isEmpty()) {
+                            throw e;
+                        }
+                        logger.warn("Email already in use: {}", user.getEmail());
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email already in use");
+                    }
+                    logger.info("New user created with ID: {}, email: {}", createdUser.getId(), createdUser.getEmail());
+
+                    return ResponseEntity.status(HttpStatus.CREATED).build();
+                }, requestExecutor)
+                .exceptionally(UserController::hashingUnavailable);
     }
 
     @DeleteMapping("/self")
-    public ResponseEntity<?> deleteUser(@RequestParam("email") String email) {
+    public CompletableFuture<ResponseEntity<?>> deleteUser(@RequestParam("email") String email, HttpServletRequest request) {
         logger.info("Received request to delete user with email: {}", email);
 
         // Find the user by email
@@ -129,171 +118,284 @@ public class UserController {
 
         if (!userOptional.isPresent()) {
             logger.warn("User not found for email: {}", email);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found"));
         }
 
+        // Remove the account first; its rows go in one transaction
+        User user = userOptional.get();
         try {
-            // Delete the user
-            userService.deleteUser(userOptional.get());
-            logger.info("User with email {} deleted successfully", email);
-
-            return ResponseEntity.ok("User deleted successfully");
-        } catch (Exception e) {
+            userService.deleteUser(user);
+        } catch (RuntimeException e) {
             logger.error("Error deleting user with email {}: {}", email, e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Failed to delete user due to: " + e.getMessage());
+            recordError(request, e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to delete user due to: " + e.getMessage()));
         }
+        logger.info("User with email {} deleted successfully", email);
+
+        // Then its profile picture; the account is gone either way, so an S3 failure only orphans the objects
+        return userService.deleteProfilePictureObjects(user)
+                .<ResponseEntity<?>>handle((ignored, e) -> {
+                    if (e != null) {
+                        logger.error("Could not delete profile picture {} of deleted user {}: {}",
+                                user.getPfpKey(), user.getId(), unwrap(e).getMessage());
+                    }
+                    return ResponseEntity.ok("User deleted successfully");
+                });
     }
 
 
     // Verify the user's email
     @GetMapping("/verify")
     public ResponseEntity<String> verifyUser(@RequestParam("token") String token) {
-        Optional<User> userOptional = userService.findByVerificationToken(token);
-
-        if (!userOptional.isPresent()) {
-            logger.warn("Verification failed: Invalid token - {}", token);
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid or expired verification token.");
+        switch (userService.verifyEmail(token)) {
+            case VERIFIED:
+                logger.info("Account verified successfully");
+                return ResponseEntity.ok("Account verified successfully.");
+            case EXPIRED:
+                logger.warn("Verification failed: Token expired");
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Verification link has expired.");
+            default:
+                logger.warn("Verification failed: Invalid token");
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid or expired verification token.");
         }
-
-        User user = userOptional.get();
-
-        // Check if the token has expired
-        if (LocalDateTime.now().isAfter(user.getTokenExpirationTime())) {
-            logger.warn("Verification failed: Token expired for user ID {}", user.getId());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Verification link has expired.");
-        }
-
-        user.setVerified(true);
-        user.setVerificationToken(null);
-        user.setTokenExpirationTime(null);
-        userService.updateUser(user);
-
-        logger.info("User ID {} verified successfully", user.getId());
-        return ResponseEntity.ok("Account verified successfully.");
     }
 
-    // Get the authenticated user's details
+    // Get the authenticated user's details; polling clients revalidate with If-None-Match
     @GetMapping("/self")
-    public ResponseEntity<UserDTO> getAuthenticatedUser() {
-        long startTime = System.currentTimeMillis();
+    public ResponseEntity<UserDTO> getAuthenticatedUser(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Received request to get authenticated user details");
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             logger.warn("Unauthorized access attempt to /self endpoint");
-            statsDClient.incrementCounter("endpoint.user.get.auth.error");
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
         String currentUserEmail = authentication.getName();
-        Optional<User> userOptional = userService.findByEmail(currentUserEmail);
+        Optional<UserProfile> userOptional = userService.findProfileByEmail(currentUserEmail);
 
-        if (userOptional.isPresent() && !userOptional.get().isVerified()) {
+        if (userOptional.isPresent() && !userOptional.get().verified()) {
             logger.warn("Access blocked for unverified user: {}", currentUserEmail);
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        long endTime = System.currentTimeMillis();
-        statsDClient.recordExecutionTime("endpoint.user.get.time", endTime - startTime);
-        statsDClient.incrementCounter("endpoint.user.get.count");
-
-        return userOptional.map(user -> ResponseEntity.ok(userService.convertToDTO(user)))
+        return userOptional.map(user -> {
+                    // The ETag comes from the cached profile, so a 304 builds and serializes nothing
+                    String etag = userService.etag(user);
+                    boolean notModified = matchesAny(ifNoneMatch, etag);
+                    ResponseEntity.BodyBuilder response = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                            .eTag(etag)
+                            .varyBy(HttpHeaders.AUTHORIZATION);
+                    // Picture URLs are pre-signed; the client may reuse the response while they stay valid.
+                    // Otherwise it may store the response but must revalidate it.
+                    response.cacheControl(userService.cacheableFor(user)
+                            .map(fresh -> CacheControl.maxAge(fresh).cachePrivate())
+                            .orElseGet(() -> CacheControl.noCache().cachePrivate()));
+                    return notModified ? response.<UserDTO>build() : response.body(userService.convertToDTO(user));
+                })
                 .orElseGet(() -> {
                     logger.warn("User not found for email: {}", currentUserEmail);
                     return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
                 });
     }
 
-    // Update the authenticated user's details
+    // Update the authenticated user's details; with If-Match only if nobody changed them since
     @PutMapping("/self")
-    public ResponseEntity<?> updateAuthenticatedUser(@Valid @RequestBody User user, BindingResult result) {
-        long startTime = System.currentTimeMillis();
+    public CompletableFuture<ResponseEntity<?>> updateAuthenticatedUser(@Valid @RequestBody User user, BindingResult result,
+                                                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         logger.info("Received request to update authenticated user");
 
         if (result.hasErrors()) {
             logger.warn("Invalid request data for updating user");
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid request data");
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid request data"));
         }
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUserEmail = authentication.getName();
 
-        Optional<User> existingUserOptional = userService.findByEmail(currentUserEmail);
-        if (!existingUserOptional.isPresent()) {
+        // Already loaded (and memoized for this request) by authentication
+        Optional<UserProfile> existingUser = userService.findProfileByEmail(currentUserEmail);
+        if (!existingUser.isPresent()) {
             logger.warn("User not found for email: {}", currentUserEmail);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
-        }
-
-        User existingUser = existingUserOptional.get();
-
-        if (user.getFirstName() != null) {
-            existingUser.setFirstName(user.getFirstName());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found"));
         }
-        if (user.getLastName() != null) {
-            existingUser.setLastName(user.getLastName());
-        }
-        if (user.getPassword() != null && !user.getPassword().isEmpty()) {
-            existingUser.setPassword(userService.encodePassword(user.getPassword()));
-        }
-
-        User updatedUser = userService.updateUser(existingUser);
 
-        long endTime = System.currentTimeMillis();
-        statsDClient.recordExecutionTime("endpoint.user.update.time", endTime - startTime);
-        statsDClient.incrementCounter("endpoint.user.update.count");
-
-        UserDTO updatedUserDTO = userService.convertToDTO(updatedUser);
-        return ResponseEntity.ok(updatedUserDTO);
+        // A new password is hashed on the hashing pool before the update; an empty one keeps the stored hash
+        String newPassword = user.getPassword();
+        CompletableFuture<String> encodedPassword = (newPassword == null || newPassword.isEmpty())
+                ? CompletableFuture.completedFuture(null)
+                : userService.encodePassword(newPassword);
+
+        // Only the supplied fields are written, in a single UPDATE; If-Match adds the version to its WHERE clause
+        OptionalLong version = requiredVersion(ifMatch, existingUser.get());
+        return encodedPassword
+                .<ResponseEntity<?>>thenApplyAsync(password -> {
+                    Optional<UserProfile> updatedUser = userService.updateProfile(existingUser.get(), version,
+                            user.getFirstName(), user.getLastName(), password);
+                    if (!updatedUser.isPresent()) {
+                        if (version.isPresent()) {
+                            logger.warn("Update with a stale If-Match rejected for: {}", currentUserEmail);
+                            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("User was modified since it was read");
+                        }
+                        logger.warn("User deleted during update: {}", currentUserEmail);
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+                    }
+
+                    UserDTO updatedUserDTO = userService.convertToDTO(updatedUser.get());
+                    // The new version is only known exactly after a conditional update
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (version.isPresent()) {
+                        response.eTag(userService.etag(updatedUser.get()));
+                    }
+                    return response.body(updatedUserDTO);
+                }, requestExecutor)
+                .exceptionally(UserController::hashingUnavailable);
     }
 
-    // Upload or update profile picture
+    // Upload or update profile picture; the multipart body is streamed straight through to S3
     @PostMapping(value = "/self/pic", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<UserDTO> uploadProfilePic(@RequestParam("profilePic") MultipartFile file) {
-        long startTime = System.currentTimeMillis();
+    public CompletableFuture<ResponseEntity<UserDTO>> uploadProfilePic(HttpServletRequest request) {
         logger.info("Received request to upload or update profile picture");
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             logger.warn("Unauthorized access attempt to upload profile picture");
-            statsDClient.incrementCounter("endpoint.user.pic.upload.auth.error");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
 
         String currentUserEmail = authentication.getName();
-        User user = userService.findByEmail(currentUserEmail).orElseThrow(() -> {
+        UserProfile user = userService.findProfileByEmail(currentUserEmail).orElseThrow(() -> {
             logger.warn("User not found for email: {}", currentUserEmail);
             return new RuntimeException("User not found");
         });
 
+        CompletableFuture<UserProfile> upload = null;
         try {
-            userService.uploadProfilePicture(file, user);
+            FileItemInputIterator items = multipartParser.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (!item.isFormField() && PROFILE_PIC_PART.equals(item.getFieldName())) {
+                    try (InputStream content = item.getInputStream()) {
+                        upload = userService.uploadProfilePicture(content, user);
+                    }
+                    break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected profile picture upload: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
         } catch (IOException e) {
             logger.error("Error uploading profile picture: {}", e.getMessage());
-            statsDClient.incrementCounter("endpoint.user.pic.upload.error");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+            recordError(request, e);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null));
+        }
+
+        if (upload == null) {
+            logger.warn("Profile picture upload is missing the '{}' part", PROFILE_PIC_PART);
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
         }
 
-        UserDTO userDTO = userService.convertToDTO(user);
+        return upload
+                .thenApplyAsync(updatedUser -> {
+                    UserDTO userDTO = userService.convertToDTO(updatedUser);
+
+                    return ResponseEntity.status(HttpStatus.CREATED).body(userDTO);
+                }, requestExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    if (cause instanceof IllegalArgumentException) {
+                        logger.warn("Uploaded profile picture rejected: {}", cause.getMessage());
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                    }
+                    logger.error("Error uploading profile picture: {}", cause.getMessage());
+                    recordError(request, cause);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+                });
+    }
 
-        long endTime = System.currentTimeMillis();
-        statsDClient.recordExecutionTime("endpoint.user.pic.upload.time", endTime - startTime);
-        statsDClient.incrementCounter("endpoint.user.pic.upload.count");
+    // Direct upload, step one: a JSON body instead of a multipart one asks for a pre-signed S3 URL,
+    // so the picture bytes go from the client to S3 without passing through Tomcat
+    @PostMapping(value = "/self/pic", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PictureUploadResponse> presignProfilePic(@Valid @RequestBody PictureUploadRequest body,
+                                                                   BindingResult result) {
+        logger.info("Received request for a profile picture upload URL");
 
-        return ResponseEntity.status(HttpStatus.CREATED).body(userDTO);
+        if (result.hasErrors()) {
+            logger.warn("Invalid profile picture upload request: {}", result.getFieldErrors());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+
+        String currentUserEmail = SecurityContextHolder.getContext().getAuthentication().getName();
+        UserProfile user = userService.findProfileByEmail(currentUserEmail).orElseThrow(() -> {
+            logger.warn("User not found for email: {}", currentUserEmail);
+            return new RuntimeException("User not found");
+        });
+
+        try {
+            CustomS3Service.PresignedUpload upload = userService.presignProfilePicture(body.contentType(), body.contentLength(), user);
+            return ResponseEntity.ok(new PictureUploadResponse(
+                    upload.key(), upload.url(), "PUT", upload.headers(), upload.expiresAt()));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected profile picture upload request: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+    }
+
+    // Direct upload, step two: record the uploaded picture once it has been checked and processed
+    @PostMapping(value = "/self/pic/confirm", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<UserDTO>> confirmProfilePic(@Valid @RequestBody PictureUploadConfirmation body,
+                                                                        BindingResult result,
+                                                                        HttpServletRequest request) {
+        logger.info("Received request to confirm a profile picture upload");
+
+        if (result.hasErrors()) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        }
+
+        String currentUserEmail = SecurityContextHolder.getContext().getAuthentication().getName();
+        UserProfile user = userService.findProfileByEmail(currentUserEmail).orElseThrow(() -> {
+            logger.warn("User not found for email: {}", currentUserEmail);
+            return new RuntimeException("User not found");
+        });
+
+        CompletableFuture<UserProfile> confirmed;
+        try {
+            confirmed = userService.confirmProfilePicture(body.key(), user);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected profile picture confirmation: {}", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+        }
+
+        return confirmed
+                .thenApplyAsync(updatedUser -> ResponseEntity.status(HttpStatus.CREATED)
+                        .body(userService.convertToDTO(updatedUser)), requestExecutor)
+                .exceptionally(e -> {
+                    Throwable cause = unwrap(e);
+                    if (cause instanceof IllegalArgumentException) {
+                        logger.warn("Uploaded profile picture rejected: {}", cause.getMessage());
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                    }
+                    if (cause instanceof S3Exception s3Error && s3Error.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                        logger.warn("Profile picture confirmed before it was uploaded: {}", body.key());
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+                    }
+                    logger.error("Error confirming profile picture: {}", cause.getMessage());
+                    recordError(request, cause);
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+                });
     }
 
     // Delete profile picture
     @DeleteMapping("/self/pic")
-    public ResponseEntity<UserDTO> deleteProfilePic() {
-        long startTime = System.currentTimeMillis();
+    public CompletableFuture<ResponseEntity<UserDTO>> deleteProfilePic(HttpServletRequest request) {
         logger.info("Received request to delete profile picture");
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
             logger.warn("Unauthorized access attempt to delete profile picture");
-            statsDClient.incrementCounter("endpoint.user.pic.delete.auth.error");
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
         }
 
         String currentUserEmail = authentication.getName();
@@ -302,25 +404,73 @@ public class UserController {
             return new RuntimeException("User not found");
         });
 
-        userService.deleteProfilePicture(user);
-
-        UserDTO userDTO = userService.convertToDTO(user);
-        userDTO.setFileName(null);
-        userDTO.setUrl(null);
-        userDTO.setUploadDate(null);
-
-        long endTime = System.currentTimeMillis();
-        statsDClient.recordExecutionTime("endpoint.user.pic.delete.time", endTime - startTime);
-        statsDClient.incrementCounter("endpoint.user.pic.delete.count");
-
-        return ResponseEntity.ok(userDTO);
+        return userService.deleteProfilePicture(user)
+                .thenApplyAsync(ignored -> {
+                    UserDTO userDTO = userService.convertToDTO(user);
+                    userDTO.setFileName(null);
+                    userDTO.setUrl(null);
+                    userDTO.setUploadDate(null);
+                    userDTO.setVariants(List.of());
+
+                    return ResponseEntity.ok(userDTO);
+                }, requestExecutor)
+                .exceptionally(e -> {
+                    logger.error("Error deleting profile picture: {}", unwrap(e).getMessage());
+                    recordError(request, unwrap(e));
+                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+                });
     }
 
     // Unsupported HTTP methods for profile picture
     @RequestMapping(value = "/self/pic", method = {RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.OPTIONS, RequestMethod.HEAD})
     public ResponseEntity<Void> handleUnsupportedMethods() {
         logger.info("Received unsupported HTTP method on /self/pic");
-        statsDClient.incrementCounter("endpoint.user.pic.unsupported.method");
         return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).build();
     }
+
+    // If-None-Match compares weakly, so W/ variants of the current ETag match too
+    static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = etag.substring(1, etag.length() - 1);
+        return ETag.parse(ifNoneMatch).stream().anyMatch(tag -> tag.isWildcard() || tag.tag().equals(current));
+    }
+
+    // The version If-Match requires; empty without a header or for *. When several ETags are listed,
+    // the newest version counts. -1 (no row) when none of them is one of this user's.
+    static OptionalLong requiredVersion(String ifMatch, UserProfile user) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return OptionalLong.empty();
+        }
+        long newest = -1;
+        for (ETag tag : ETag.parse(ifMatch)) {
+            if (tag.isWildcard()) {
+                return OptionalLong.empty();
+            }
+            newest = Math.max(newest, UserService.versionOf(tag, user).orElse(-1));
+        }
+        return OptionalLong.of(newest);
+    }
+
+    // A saturated hashing pool answers 503 so clients back off; other failures propagate as before
+    private static ResponseEntity<?> hashingUnavailable(Throwable e) {
+        if (unwrap(e) instanceof RejectedExecutionException) {
+            logger.warn("Password hashing pool saturated; rejecting the request");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Server busy; try again shortly");
+        }
+        throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+    }
+
+    // Handled failures still answer with a status; attach the cause so http.server.requests tags its exception class
+    private static void recordError(HttpServletRequest request, Throwable error) {
+        ServerHttpObservationFilter.findObservationContext(request).ifPresent(context -> context.setError(error));
+    }
+
+    // Futures wrap failures in CompletionException; log the underlying cause
+    private static Throwable unwrap(Throwable e) {
+        return (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+    }
 }
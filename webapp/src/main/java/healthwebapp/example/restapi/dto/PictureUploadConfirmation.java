@@ -0,0 +1,9 @@
+package healthwebapp.example.restapi.dto;
+
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Confirms a direct upload (POST /v1/user/self/pic/confirm) by the key it was issued for.
+ */
+public record PictureUploadConfirmation(@NotBlank String key) {
+}
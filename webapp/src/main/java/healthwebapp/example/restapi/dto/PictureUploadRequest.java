@@ -0,0 +1,15 @@
+package healthwebapp.example.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Asks for a direct-upload URL (POST /v1/user/self/pic with a JSON body); the client must then
+ * PUT exactly contentLength bytes of contentType.
+ */
+public record PictureUploadRequest(
+        @JsonProperty("content_type") @NotBlank String contentType,
+        @JsonProperty("content_length") @Positive long contentLength
+) {
+}
@@ -0,0 +1,19 @@
+package healthwebapp.example.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Where to send the picture bytes: a pre-signed S3 URL and the headers it was signed with. Once the
+ * PUT succeeds, the key is passed to POST /v1/user/self/pic/confirm.
+ */
+public record PictureUploadResponse(
+        String key,
+        @JsonProperty("upload_url") String uploadUrl,
+        String method,
+        Map<String, String> headers,
+        @JsonProperty("expires_at") Instant expiresAt
+) {
+}
@@ -0,0 +1,14 @@
+package healthwebapp.example.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A resized copy of the profile picture; size is the longest edge in pixels (at most, since
+ * pictures are never upscaled).
+ */
+public record ProfilePictureVariant(
+        int size,
+        @JsonProperty("content_type") String contentType,
+        String url
+) {
+}
@@ -0,0 +1,10 @@
+package healthwebapp.example.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * A refresh token to exchange (POST /v1/user/token/refresh) or revoke (POST /v1/user/token/revoke).
+ */
+public record RefreshTokenRequest(@NotBlank @JsonProperty("refresh_token") String refreshToken) {
+}
@@ -0,0 +1,16 @@
+package healthwebapp.example.restapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Bearer tokens from POST /v1/user/token (and /refresh), in the shape of an OAuth 2.0 token
+ * response. Lifetimes are in seconds.
+ */
+public record TokenResponse(
+        @JsonProperty("access_token") String accessToken,
+        @JsonProperty("token_type") String tokenType,
+        @JsonProperty("expires_in") long expiresIn,
+        @JsonProperty("refresh_token") String refreshToken,
+        @JsonProperty("refresh_expires_in") long refreshExpiresIn
+) {
+}
@@ -1,6 +1,7 @@
 package healthwebapp.example.restapi.dto;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -29,6 +30,10 @@ public class UserDTO {
     @JsonProperty("user_id")
     private String userId;
 
+    // Smaller copies of the picture at url, largest first; empty when there are none
+    @JsonProperty("variants")
+    private List<ProfilePictureVariant> variants = List.of();
+
     // Default constructor
     public UserDTO() {}
 
@@ -76,4 +81,7 @@ public class UserDTO {
 
     public String getUserId() { return userId; }
     public void setUserId(String userId) { this.userId = userId; }
+
+    public List<ProfilePictureVariant> getVariants() { return variants; }
+    public void setVariants(List<ProfilePictureVariant> variants) { this.variants = variants; }
 }
@@ -0,0 +1,17 @@
+package healthwebapp.example.restapi.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import. Only the first rejected lines are listed; rejected counts them all.
+ */
+public record UserImportResult(
+        long imported,
+        long rejected,
+        List<RowError> errors
+) {
+
+    // 1-based line number in the uploaded file
+    public record RowError(long line, String error) {
+    }
+}
@@ -0,0 +1,16 @@
+package healthwebapp.example.restapi.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+
+/**
+ * One line of a bulk import (POST /v1/user/import), with the same fields as POST /v1/user.
+ */
+public record UserImportRow(
+        @NotBlank @Email @Size(max = 255) String email,
+        @NotBlank @Size(max = 72) String password,
+        @NotBlank @Size(max = 255) String firstName,
+        @NotBlank @Size(max = 255) String lastName
+) {
+}
@@ -0,0 +1,52 @@
+package healthwebapp.example.restapi.dto;
+
+import healthwebapp.example.restapi.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable snapshot of a user row, safe to share between requests and threads.
+ * Used on the read path (authentication and GET /self) in place of the managed User entity.
+ */
+public record UserProfile(
+        Long id,
+        String email,
+        String password,
+        String firstName,
+        String lastName,
+        boolean verified,
+        LocalDateTime accountCreated,
+        LocalDateTime accountUpdated,
+        String profilePicUrl,
+        LocalDateTime profilePicUploadDate,
+        String pfpKey,
+        String pfpVariants,
+        long version,
+        LocalDateTime passwordUpdated
+) {
+
+    public static UserProfile of(User user) {
+        return new UserProfile(
+                user.getId(),
+                user.getEmail(),
+                user.getPassword(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.isVerified(),
+                user.getAccountCreated(),
+                user.getAccountUpdated(),
+                user.getProfilePicUrl(),
+                user.getProfilePicUploadDate(),
+                user.getPfpKey(),
+                user.getPfpVariants(),
+                user.getVersion(),
+                user.getPasswordUpdated()
+        );
+    }
+
+    // Keep the password hash out of logs
+    @Override
+    public String toString() {
+        return "UserProfile{id=" + id + ", email='" + email + "', verified=" + verified + '}';
+    }
+}
@@ -0,0 +1,154 @@
+package healthwebapp.example.restapi.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A verification message waiting to be published to SNS. Rows are written in the same
+ * transaction as the user they belong to and drained by VerificationOutboxDispatcher.
+ */
+@Entity
+@Table(name = "verification_outbox")
+public class OutboxMessage {
+
+    public enum DeliveryStatus {
+        PENDING,
+        SENT,
+        FAILED
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String payload;
+
+    // Sent as the contentType SNS message attribute; null (rows written before it existed) means JSON
+    @Column(name = "content_type", length = 64)
+    private String contentType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private DeliveryStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "message_id")
+    private String messageId;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    // Default constructor
+    public OutboxMessage() {
+    }
+
+    // Create a message that is ready to be published right away
+    public static OutboxMessage pending(String payload, LocalDateTime now) {
+        return pending(payload, null, now);
+    }
+
+    public static OutboxMessage pending(String payload, String contentType, LocalDateTime now) {
+        OutboxMessage message = new OutboxMessage();
+        message.setPayload(payload);
+        message.setContentType(contentType);
+        message.setStatus(DeliveryStatus.PENDING);
+        message.setAttempts(0);
+        message.setCreatedAt(now);
+        message.setNextAttemptAt(now);
+        return message;
+    }
+
+    // Getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public DeliveryStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(DeliveryStatus status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public String getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(String messageId) {
+        this.messageId = messageId;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
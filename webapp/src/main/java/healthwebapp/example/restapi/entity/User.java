@@ -25,42 +25,25 @@ public class User {
 
     private String pfpKey;
 
+    // Comma-separated names of the resized variants stored next to pfpKey
+    private String pfpVariants;
+
 
     @Column(name = "is_verified")
     private boolean verified;
 
-
-
-
     private LocalDateTime accountCreated;
     private LocalDateTime accountUpdated;
+    // Set by password changes only; rehashing the same password leaves it alone
+    private LocalDateTime passwordUpdated;
 
     // Profile picture URL and upload date
     private String profilePicUrl; // URL for the profile picture
     private LocalDateTime profilePicUploadDate; // Upload date for the profile picture
 
-    @Column(name = "verification_token")
-    private String verificationToken;
-
-    @Column(name = "token_expiration_time")
-    private LocalDateTime tokenExpirationTime;
-
-    // Getters and setters
-    public String getVerificationToken() {
-        return verificationToken;
-    }
-
-    public void setVerificationToken(String verificationToken) {
-        this.verificationToken = verificationToken;
-    }
-
-    public LocalDateTime getTokenExpirationTime() {
-        return tokenExpirationTime;
-    }
-
-    public void setTokenExpirationTime(LocalDateTime tokenExpirationTime) {
-        this.tokenExpirationTime = tokenExpirationTime;
-    }
+    // Optimistic lock; the update queries in UserRepository increment it as well
+    @Version
+    private long version;
 
     // Default constructor
     public User() {
@@ -124,6 +107,18 @@ public class User {
         this.accountUpdated = accountUpdated;
     }
 
+    public LocalDateTime getPasswordUpdated() {
+        return passwordUpdated;
+    }
+
+    public void setPasswordUpdated(LocalDateTime passwordUpdated) {
+        this.passwordUpdated = passwordUpdated;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public String getProfilePicUrl() {
         return profilePicUrl;
     }
@@ -147,6 +142,14 @@ public class User {
         this.pfpKey = key;
     }
 
+    public String getPfpVariants() {
+        return pfpVariants;
+    }
+
+    public void setPfpVariants(String pfpVariants) {
+        this.pfpVariants = pfpVariants;
+    }
+
     // Getter and Setter for verified
     public boolean isVerified() {
         return verified;
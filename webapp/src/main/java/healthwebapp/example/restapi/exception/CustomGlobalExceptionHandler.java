@@ -1,5 +1,6 @@
 package healthwebapp.example.restapi.exception;
 
+import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +10,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 @ControllerAdvice
+@Profile("!reactive")
 public class CustomGlobalExceptionHandler extends ResponseEntityExceptionHandler {
 
 //    @Override
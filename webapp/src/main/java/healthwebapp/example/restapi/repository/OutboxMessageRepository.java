@@ -0,0 +1,34 @@
+package healthwebapp.example.restapi.repository;
+
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.OutboxMessage.DeliveryStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // Lock the next due messages; lock timeout -2 is SKIP LOCKED so instances don't contend
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<OutboxMessage> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(DeliveryStatus status,
+                                                                             LocalDateTime now,
+                                                                             Pageable pageable);
+
+    // Count messages in a given delivery state (queue depth)
+    long countByStatus(DeliveryStatus status);
+
+    // Ids of the oldest delivered or abandoned messages created before the cutoff, walked through the created_at index
+    @Query("select m.id from OutboxMessage m where m.status <> :pending and m.createdAt < :cutoff order by m.createdAt")
+    List<Long> findFinishedIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff,
+                                            @Param("pending") DeliveryStatus pending,
+                                            Pageable pageable);
+}
@@ -0,0 +1,131 @@
+package healthwebapp.example.restapi.repository;
+
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.entity.VerificationToken;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plain JDBC for the bulk import and export. The entities use IDENTITY ids, which keeps Hibernate
+ * from batching their inserts, so bulk rows are written here as JDBC batches (rewritten into
+ * multi-row INSERTs by the Postgres driver). Callers provide the transaction.
+ */
+@Repository
+public class UserBatchRepository {
+
+    private static final String INSERT_USER = "insert into users (email, password, first_name, last_name,"
+            + " is_verified, account_created, account_updated, version)"
+            + " values (:email, :password, :firstName, :lastName, false, :now, :now, 0)";
+
+    private static final String INSERT_TOKEN = "insert into verification_tokens (token_hash, user_id, expires_at)"
+            + " values (:tokenHash, :userId, :expiresAt)";
+
+    private static final String INSERT_OUTBOX = "insert into verification_outbox (payload, content_type, status,"
+            + " attempts, next_attempt_at, created_at) values (:payload, :contentType, :status, 0, :nextAttemptAt, :createdAt)";
+
+    private static final String EXPORT_USERS = "select id, email, first_name, last_name, is_verified,"
+            + " account_created, account_updated from users order by id";
+
+    private static final String STREAM_EMAILS = "select email from users";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public UserBatchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        if (emails.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList("select email from users where email in (:emails)",
+                Map.of("emails", emails), String.class));
+    }
+
+    // Inserts unverified users created at now; returns their generated ids keyed by email
+    public Map<String, Long> insertUsers(List<User> users, Timestamp now) {
+        SqlParameterSource[] rows = new SqlParameterSource[users.size()];
+        for (int i = 0; i < rows.length; i++) {
+            User user = users.get(i);
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("email", user.getEmail())
+                    .addValue("password", user.getPassword())
+                    .addValue("firstName", user.getFirstName())
+                    .addValue("lastName", user.getLastName())
+                    .addValue("now", now);
+        }
+        jdbcTemplate.batchUpdate(INSERT_USER, rows);
+
+        // Read the ids back in one query rather than per-row generated keys, so the driver can rewrite the batch
+        Map<String, Long> ids = new HashMap<>();
+        jdbcTemplate.query("select id, email from users where email in (:emails)",
+                Map.of("emails", users.stream().map(User::getEmail).toList()),
+                (RowCallbackHandler) rs -> ids.put(rs.getString("email"), rs.getLong("id")));
+        return ids;
+    }
+
+    public void insertVerificationTokens(List<VerificationToken> tokens) {
+        SqlParameterSource[] rows = new SqlParameterSource[tokens.size()];
+        for (int i = 0; i < rows.length; i++) {
+            VerificationToken token = tokens.get(i);
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("tokenHash", token.getTokenHash())
+                    .addValue("userId", token.getUserId())
+                    .addValue("expiresAt", Timestamp.valueOf(token.getExpiresAt()));
+        }
+        jdbcTemplate.batchUpdate(INSERT_TOKEN, rows);
+    }
+
+    public void insertOutboxMessages(List<OutboxMessage> messages) {
+        SqlParameterSource[] rows = new SqlParameterSource[messages.size()];
+        for (int i = 0; i < rows.length; i++) {
+            OutboxMessage message = messages.get(i);
+            rows[i] = new MapSqlParameterSource()
+                    .addValue("payload", message.getPayload())
+                    .addValue("contentType", message.getContentType())
+                    .addValue("status", message.getStatus().name())
+                    .addValue("nextAttemptAt", Timestamp.valueOf(message.getNextAttemptAt()))
+                    .addValue("createdAt", Timestamp.valueOf(message.getCreatedAt()));
+        }
+        jdbcTemplate.batchUpdate(INSERT_OUTBOX, rows);
+    }
+
+    /**
+     * Streams every user, without passwords, in id order. With a fetch size and an open transaction
+     * the Postgres driver reads through a server-side cursor, so only one fetch is held in memory.
+     */
+    public void exportUsers(int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(EXPORT_USERS);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler);
+    }
+
+    public long countUsers() {
+        Long count = jdbcTemplate.getJdbcTemplate().queryForObject("select count(*) from users", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    // Streams the email column alone, through a server-side cursor like exportUsers
+    public void streamEmails(int fetchSize, RowCallbackHandler handler) {
+        jdbcTemplate.getJdbcTemplate().query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STREAM_EMAILS);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler);
+    }
+}
@@ -1,8 +1,13 @@
 package healthwebapp.example.restapi.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import healthwebapp.example.restapi.entity.User;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -11,12 +16,76 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findById(Long userId);
 
-    // Find a user by verification token
-    Optional<User> findByVerificationToken(String verificationToken);
+    // Single-statement writes by primary key. Each returns the number of rows changed (0 when the
+    // user is gone) and bumps the version, so a stale entity saved afterwards fails its version check.
+
+    // Flip the verified flag; also 0 when the user is already verified
+    @Modifying
+    @Transactional
+    @Query("update User u set u.verified = true, u.accountUpdated = :now, u.version = u.version + 1"
+            + " where u.id = :id and u.verified = false")
+    int markVerified(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Null arguments leave the column as it is, so concurrent edits of different fields both survive
+    @Modifying
+    @Transactional
+    @Query("update User u set u.firstName = coalesce(:firstName, u.firstName),"
+            + " u.lastName = coalesce(:lastName, u.lastName), u.password = coalesce(:password, u.password),"
+            + " u.passwordUpdated = case when :password is null then u.passwordUpdated else :now end,"
+            + " u.accountUpdated = :now, u.version = u.version + 1 where u.id = :id")
+    int updateProfile(@Param("id") Long id, @Param("firstName") String firstName, @Param("lastName") String lastName,
+                      @Param("password") String password, @Param("now") LocalDateTime now);
+
+    // updateProfile for an If-Match request: 0 as well when the row has moved past version
+    @Modifying
+    @Transactional
+    @Query("update User u set u.firstName = coalesce(:firstName, u.firstName),"
+            + " u.lastName = coalesce(:lastName, u.lastName), u.password = coalesce(:password, u.password),"
+            + " u.passwordUpdated = case when :password is null then u.passwordUpdated else :now end,"
+            + " u.accountUpdated = :now, u.version = u.version + 1 where u.id = :id and u.version = :version")
+    int updateProfileAtVersion(@Param("id") Long id, @Param("version") long version, @Param("firstName") String firstName,
+                               @Param("lastName") String lastName, @Param("password") String password,
+                               @Param("now") LocalDateTime now);
+
+    // Only replaces the picture the caller last saw (previousKey, null for none), so the caller knows
+    // which objects it replaced; 0 as well when another picture got in first
+    @Modifying
+    @Transactional
+    @Query("update User u set u.pfpKey = :pfpKey, u.pfpVariants = :variants, u.profilePicUrl = :url,"
+            + " u.profilePicUploadDate = :now, u.accountUpdated = :now, u.version = u.version + 1"
+            + " where u.id = :id and u.pfpKey is not distinct from :previousKey")
+    int replaceProfilePicture(@Param("id") Long id, @Param("previousKey") String previousKey,
+                              @Param("pfpKey") String pfpKey, @Param("variants") String variants,
+                              @Param("url") String url, @Param("now") LocalDateTime now);
+
+    // Only clears the picture that was deleted from S3, not one uploaded in the meantime
+    @Modifying
+    @Transactional
+    @Query("update User u set u.pfpKey = null, u.pfpVariants = null, u.profilePicUrl = null,"
+            + " u.profilePicUploadDate = null, u.accountUpdated = :now, u.version = u.version + 1"
+            + " where u.id = :id and u.pfpKey = :pfpKey")
+    int clearProfilePicture(@Param("id") Long id, @Param("pfpKey") String pfpKey, @Param("now") LocalDateTime now);
+
+    // Stores a rehash of the same password, unless the password changed since oldPassword was read.
+    // Leaves the version alone: the hash is in no representation, and the old one still verifies.
+    @Modifying
+    @Transactional
+    @Query("update User u set u.password = :newPassword where u.email = :email and u.password = :oldPassword")
+    int replacePasswordHash(@Param("email") String email, @Param("oldPassword") String oldPassword,
+                            @Param("newPassword") String newPassword);
+
+    // Unlike delete(entity) this does not depend on the version the caller loaded
+    @Modifying
+    @Transactional
+    @Query("delete from User u where u.id = :id")
+    int deleteUserById(@Param("id") Long id);
 
     // Find a user by email
     Optional<User> findByEmail(String email);
 
+    // Index-only probe for the signup duplicate check
+    boolean existsByEmail(String email);
+
 
 
     // Delete a user by user ID
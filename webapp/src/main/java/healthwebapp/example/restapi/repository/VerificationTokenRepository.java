@@ -0,0 +1,31 @@
+package healthwebapp.example.restapi.repository;
+
+import healthwebapp.example.restapi.entity.VerificationToken;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface VerificationTokenRepository extends JpaRepository<VerificationToken, Long> {
+
+    // Single probe of the unique token_hash index
+    Optional<VerificationToken> findByTokenHash(byte[] tokenHash);
+
+    // Ids of the oldest expired tokens, walked through the expires_at index
+    @Query("select t.id from VerificationToken t where t.expiresAt < :now order by t.expiresAt")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Returns 0 when another request already consumed the token
+    @Modifying
+    @Query("delete from VerificationToken t where t.id = :id")
+    int deleteTokenById(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from VerificationToken t where t.userId = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
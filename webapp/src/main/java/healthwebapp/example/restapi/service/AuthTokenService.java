@@ -0,0 +1,233 @@
+package healthwebapp.example.restapi.service;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import healthwebapp.example.restapi.dto.UserProfile;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2ErrorCodes;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Issues and checks the bearer tokens handed out by POST /v1/user/token. Both kinds are HS256 JWTs
+ * signed with auth.token.secret and verified locally, so a request carrying an access token needs no
+ * BCrypt, only the (usually cached) profile that accountOf checks it against.
+ *
+ * Tokens name their account by email (sub) and id (uid); both must still match, so a token outlives
+ * neither the deletion of its account nor a new account registered under the same email. Access
+ * tokens last auth.token.access-ttl-seconds. Refresh tokens last refresh-ttl-seconds, are only
+ * accepted by refresh(), and stop working once the password is changed after they were issued
+ * (users.password_updated); rehashing the same password on login leaves them valid. Revoked tokens
+ * stay on the TokenDenyList until they expire.
+ */
+@Service
+public class AuthTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuthTokenService.class);
+
+    public static final String ROLES_CLAIM = "roles";
+    private static final String ADMIN_ROLE = "ADMIN";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String TOKEN_USE_CLAIM = "token_use";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // HS256 needs a key at least as long as its output
+    private static final int MIN_SECRET_BYTES = 32;
+
+    /** A token pair; the refresh token is the presented one after a refresh. */
+    public record IssuedTokens(String accessToken, Duration accessTtl, String refreshToken, Duration refreshTtl) {
+    }
+
+    private final UserProfileCache userProfileCache;
+    private final TokenDenyList denyList;
+    private final Set<String> adminEmails;
+    private final SecretKey key;
+    private final JwtEncoder encoder;
+    private final JwtDecoder accessDecoder;
+    private final JwtDecoder refreshDecoder;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+    private final Counter issued;
+    private final Counter refreshed;
+    private final Counter revoked;
+
+    public AuthTokenService(UserProfileCache userProfileCache,
+                            TokenDenyList denyList,
+                            MeterRegistry meterRegistry,
+                            @Value("${admin.emails:}") Set<String> adminEmails,
+                            @Value("${auth.token.secret:}") String secret,
+                            @Value("${auth.token.access-ttl-seconds:900}") long accessTtlSeconds,
+                            @Value("${auth.token.refresh-ttl-seconds:86400}") long refreshTtlSeconds) {
+        this.userProfileCache = userProfileCache;
+        this.denyList = denyList;
+        this.adminEmails = adminEmails;
+        this.key = signingKey(secret);
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+        this.accessDecoder = decoder(ACCESS);
+        this.refreshDecoder = decoder(REFRESH);
+        this.accessTtl = Duration.ofSeconds(accessTtlSeconds);
+        this.refreshTtl = Duration.ofSeconds(refreshTtlSeconds);
+        this.issued = meterRegistry.counter("auth.tokens", "event", "issued");
+        this.refreshed = meterRegistry.counter("auth.tokens", "event", "refreshed");
+        this.revoked = meterRegistry.counter("auth.tokens", "event", "revoked");
+    }
+
+    // Checks signature, expiry, kind and the deny list; used by the resource server for every request
+    public JwtDecoder accessTokenDecoder() {
+        return accessDecoder;
+    }
+
+    // For a user who has just authenticated with a password; roles are fixed until the next login
+    public IssuedTokens issue(UserProfile user, Collection<String> roles) {
+        Instant now = Instant.now();
+        String accessToken = encode(claims(user, roles, ACCESS, now, accessTtl).build());
+        String refreshToken = encode(claims(user, roles, REFRESH, now, refreshTtl).build());
+        issued.increment();
+        return new IssuedTokens(accessToken, accessTtl, refreshToken, refreshTtl);
+    }
+
+    /**
+     * A new access token for a refresh token. Empty when the token is invalid, expired or revoked,
+     * or when its user has been deleted, is unverified or has changed the password since. Roles are
+     * worked out again from admin.emails rather than carried over from the refresh token.
+     */
+    public Optional<IssuedTokens> refresh(String refreshToken) {
+        Optional<Jwt> token = decodeRefreshToken(refreshToken);
+        if (token.isEmpty()) {
+            return Optional.empty();
+        }
+        Optional<UserProfile> user = accountOf(token.get());
+        if (user.isEmpty() || !user.get().verified() || passwordChangedSince(user.get(), token.get().getIssuedAt())) {
+            return Optional.empty();
+        }
+
+        Instant now = Instant.now();
+        List<String> roles = adminEmails.contains(user.get().email()) ? List.of(ADMIN_ROLE) : List.of();
+        String accessToken = encode(claims(user.get(), roles, ACCESS, now, accessTtl).build());
+        refreshed.increment();
+        return Optional.of(new IssuedTokens(accessToken, accessTtl, refreshToken,
+                Duration.between(now, token.get().getExpiresAt())));
+    }
+
+    // The account a decoded token was issued to; empty once it is deleted, even if its email is
+    // registered again, since the new account has another id
+    public Optional<UserProfile> accountOf(Jwt token) {
+        Object userId = token.getClaims().get(USER_ID_CLAIM);
+        if (!(userId instanceof Number id)) {
+            return Optional.empty();
+        }
+        return userProfileCache.getByEmail(token.getSubject())
+                .filter(user -> user.id() != null && user.id() == id.longValue());
+    }
+
+    public void revoke(Jwt token) {
+        denyList.deny(token.getId(), token.getExpiresAt());
+        revoked.increment();
+    }
+
+    // Revokes a refresh token of the given user; false when it is invalid or someone else's
+    public boolean revokeRefreshToken(String refreshToken, String email) {
+        Optional<Jwt> token = decodeRefreshToken(refreshToken).filter(jwt -> email.equals(jwt.getSubject()));
+        token.ifPresent(this::revoke);
+        return token.isPresent();
+    }
+
+    private Optional<Jwt> decodeRefreshToken(String refreshToken) {
+        try {
+            return Optional.of(refreshDecoder.decode(refreshToken));
+        } catch (JwtException e) {
+            logger.debug("Rejected refresh token: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private JwtClaimsSet.Builder claims(UserProfile user, Collection<String> roles, String use, Instant now,
+                                        Duration ttl) {
+        return JwtClaimsSet.builder()
+                .id(UUID.randomUUID().toString())
+                .subject(user.email())
+                .issuedAt(now)
+                .expiresAt(now.plus(ttl))
+                .claim(USER_ID_CLAIM, user.id())
+                .claim(ROLES_CLAIM, List.copyOf(roles))
+                .claim(TOKEN_USE_CLAIM, use);
+    }
+
+    private String encode(JwtClaimsSet claims) {
+        return encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                .getTokenValue();
+    }
+
+    private JwtDecoder decoder(String use) {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withSecretKey(key).macAlgorithm(MacAlgorithm.HS256).build();
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefault(),
+                new JwtClaimValidator<String>(TOKEN_USE_CLAIM, use::equals),
+                jwt -> denyList.isDenied(jwt.getId())
+                        ? OAuth2TokenValidatorResult.failure(
+                                new OAuth2Error(OAuth2ErrorCodes.INVALID_TOKEN, "Token has been revoked", null))
+                        : OAuth2TokenValidatorResult.success()));
+        return decoder;
+    }
+
+    // iat has whole seconds; a token issued in the same second as the change counts as before it
+    private static boolean passwordChangedSince(UserProfile user, Instant issuedAt) {
+        if (user.passwordUpdated() == null) {
+            return false;
+        }
+        Instant changed = user.passwordUpdated().atZone(ZoneId.systemDefault()).toInstant()
+                .truncatedTo(ChronoUnit.SECONDS);
+        return issuedAt == null || !issuedAt.isAfter(changed);
+    }
+
+    // Without a configured secret, tokens only work on this instance and until it restarts
+    private static SecretKey signingKey(String secret) {
+        if (secret == null || secret.isEmpty()) {
+            logger.warn("auth.token.secret is not set; bearer tokens are signed with a random per-process key");
+            try {
+                return KeyGenerator.getInstance(HMAC_ALGORITHM).generateKey();
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC algorithm not available: " + HMAC_ALGORITHM, e);
+            }
+        }
+        byte[] bytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("auth.token.secret must be at least " + MIN_SECRET_BYTES + " bytes");
+        }
+        return new SecretKeySpec(bytes, HMAC_ALGORITHM);
+    }
+}
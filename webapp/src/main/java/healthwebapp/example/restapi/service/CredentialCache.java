@@ -0,0 +1,88 @@
+package healthwebapp.example.restapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+/**
+ * Remembers recently verified Basic-auth credentials so repeat requests can skip BCrypt.
+ * Entries hold an HMAC of the presented password (keyed with a per-process random key, so the
+ * raw secret is never stored) together with the stored hash it was verified against. A hit
+ * only counts when the stored hash is unchanged, so a password change made elsewhere is
+ * picked up on the next lookup even without explicit invalidation.
+ */
+@Component
+public class CredentialCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final Cache<String, CachedCredential> cache;
+    private final SecretKey hmacKey;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CredentialCache(MeterRegistry meterRegistry,
+                           @Value("${auth.cache.max-size:10000}") long maxSize,
+                           @Value("${auth.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.hits = meterRegistry.counter("auth.cache", "result", "hit");
+        this.misses = meterRegistry.counter("auth.cache", "result", "miss");
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        try {
+            this.hmacKey = KeyGenerator.getInstance(HMAC_ALGORITHM).generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC algorithm not available: " + HMAC_ALGORITHM, e);
+        }
+    }
+
+    // True when this exact secret was already verified against the given stored hash
+    public boolean matches(String email, CharSequence rawPassword, String encodedPassword) {
+        CachedCredential cached = cache.getIfPresent(email);
+        boolean hit = cached != null
+                && cached.encodedPassword().equals(encodedPassword)
+                && MessageDigest.isEqual(cached.secretDigest(), digest(email, rawPassword));
+
+        (hit ? hits : misses).increment();
+        return hit;
+    }
+
+    // Record a credential that has just passed a full password check
+    public void put(String email, CharSequence rawPassword, String encodedPassword) {
+        cache.put(email, new CachedCredential(digest(email, rawPassword), encodedPassword));
+    }
+
+    // Drop the cached credential when the password changes or the user is removed
+    public void invalidate(String email) {
+        if (email != null) {
+            cache.invalidate(email);
+        }
+    }
+
+    private byte[] digest(String email, CharSequence rawPassword) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(hmacKey);
+            mac.update(email.getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            return mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to compute credential digest", e);
+        }
+    }
+
+    private record CachedCredential(byte[] secretDigest, String encodedPassword) {
+    }
+}
@@ -1,88 +1,408 @@
 package healthwebapp.example.restapi.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
-
-import com.amazonaws.AmazonServiceException;
-import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
-import com.amazonaws.regions.Regions;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.DeleteObjectRequest;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
+
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.ObjectCannedACL;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
 @Service
 public class CustomS3Service {
 
-    private final AmazonS3 s3Client;
+    // S3 rejects multipart parts smaller than 5MB (except the last one)
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    // Set on direct uploads until they are confirmed; a bucket lifecycle rule expires what never is
+    private static final String PENDING_UPLOAD_TAG = "upload=pending";
+
+    /** Where a picture and its variants were stored; variants are names for variantKey. */
+    public record StoredImage(String key, List<String> variants) {
+    }
+
+    /** A pre-signed PUT for one picture. The client sends the bytes to url with these headers. */
+    public record PresignedUpload(String key, String url, Map<String, String> headers, Instant expiresAt) {
+    }
+
+    private final S3AsyncClient s3Client;
+    private final S3Presigner presigner;
+    private final ProfilePictureProcessor imageProcessor;
     private final String bucketName;
-    private final long MAX_FILE_SIZE = 5 * 1024 * 1024; // 5MB
+    private final long maxFileSize;
+    private final Duration uploadUrlTtl;
+    private final PartBufferPool bufferPool;
 
-    public CustomS3Service(@Value("${aws.s3.bucket-name}") String bucketName) {
+    public CustomS3Service(S3AsyncClient s3Client,
+                           S3Presigner presigner,
+                           ProfilePictureProcessor imageProcessor,
+                           @Value("${aws.s3.bucket-name}") String bucketName,
+                           @Value("${aws.s3.upload.max-file-size:5242880}") long maxFileSize, // 5MB
+                           @Value("${aws.s3.upload.part-size:5242880}") int partSize,
+                           @Value("${aws.s3.upload.max-buffers:16}") int maxBuffers,
+                           @Value("${aws.s3.upload.buffer-wait-ms:2000}") long bufferWaitMs,
+                           @Value("${aws.s3.upload.url-ttl-seconds:300}") long uploadUrlTtlSeconds) {
+        this.s3Client = s3Client;
+        this.presigner = presigner;
+        this.imageProcessor = imageProcessor;
         this.bucketName = bucketName;
-        // Create S3 client with default credentials and region
-        this.s3Client = AmazonS3ClientBuilder.standard()
-                .withRegion(Regions.US_EAST_1) // Specify your desired region
-                .withCredentials(new DefaultAWSCredentialsProviderChain())
-                .build();
+        this.maxFileSize = maxFileSize;
+        this.uploadUrlTtl = Duration.ofSeconds(uploadUrlTtlSeconds);
+        this.bufferPool = new PartBufferPool(Math.max(partSize, MIN_PART_SIZE), maxBuffers, bufferWaitMs);
     }
 
-    public String uploadFile(MultipartFile file, UUID userId) throws IOException {
-        if (file.getSize() > MAX_FILE_SIZE) {
-            throw new IllegalArgumentException("File size exceeds maximum limit of 5MB");
+    /**
+     * Signs a PUT of exactly contentLength bytes of contentType to a new key under the user's prefix,
+     * so the picture goes from the client to S3 without passing through the webapp. The object is
+     * tagged as pending until confirmUpload processes it.
+     */
+    public PresignedUpload presignUpload(String contentType, long contentLength, UUID userId) {
+        String extension = extensionOf(contentType);
+        if (contentLength <= 0) {
+            throw new IllegalArgumentException("Content length must be positive");
         }
+        checkSize(contentLength);
+
+        String key = newKey(userId, extension);
+        PresignedPutObjectRequest presigned = presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(uploadUrlTtl)
+                .putObjectRequest(PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .contentLength(contentLength)
+                        .tagging(PENDING_UPLOAD_TAG)
+                        .build())
+                .build());
+
+        // Host and Content-Length are set by every HTTP client; the rest the client must send as signed
+        Map<String, String> headers = new TreeMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host") && !name.equalsIgnoreCase("content-length")) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+        return new PresignedUpload(key, presigned.url().toString(), headers, presigned.expiration());
+    }
 
-        String contentType = file.getContentType();
-        if (contentType == null || !(contentType.equals("image/png")
-                || contentType.equals("image/jpeg")
-                || contentType.equals("image/jpg"))) {
-            throw new IllegalArgumentException("Invalid file type. Only PNG, JPG, and JPEG are allowed");
+    /**
+     * Completes a direct upload: checks the object's size with a HEAD, then reads it back (S3 to
+     * the instance, not over the client's connection) to verify it is an image, strip its metadata
+     * and store its variants. The processed picture replaces the uploaded one, which also drops the
+     * pending tag. An object that is too large or not an image is deleted.
+     */
+    public CompletableFuture<StoredImage> confirmUpload(String key, UUID userId) {
+        if (!isUploadKey(key, userId)) {
+            throw new IllegalArgumentException("Not a profile picture upload of this user");
         }
 
-        String fileExtension = getFileExtension(file.getOriginalFilename());
-        String key = String.format("users/%s/profile-picture-%s%s",
-                userId,
-                UUID.randomUUID().toString(),
-                fileExtension);
+        return s3Client.headObject(request -> request.bucket(bucketName).key(key))
+                .thenCompose(head -> {
+                    checkSize(head.contentLength());
+                    return s3Client.getObject(request -> request.bucket(bucketName).key(key),
+                            AsyncResponseTransformer.toBytes());
+                })
+                .thenCompose(object -> {
+                    byte[] data = object.asByteArrayUnsafe();
+                    return putImage(key, detectContentType(data, data.length), data, data.length, () -> {
+                    });
+                })
+                .whenComplete((stored, error) -> {
+                    if (error instanceof CompletionException && error.getCause() instanceof IllegalArgumentException) {
+                        deleteFile(key);
+                    }
+                });
+    }
 
-        // Set metadata for the file
-        ObjectMetadata metadata = new ObjectMetadata();
-        metadata.setContentType(contentType);
-        metadata.setContentLength(file.getSize());
+    // Keys handed out by presignUpload; variant keys and other users' prefixes never match
+    static boolean isUploadKey(String key, UUID userId) {
+        return key != null && Pattern.matches(
+                Pattern.quote("users/" + userId + "/profile-picture-") + "[0-9a-f]{8}(-[0-9a-f]{4}){3}-[0-9a-f]{12}\\.(jpg|png)", key);
+    }
 
-        // Upload the file
+    private static String newKey(UUID userId, String extension) {
+        return String.format("users/%s/profile-picture-%s%s", userId, UUID.randomUUID(), extension);
+    }
+
+    /**
+     * Streams an image into S3 without staging it on disk. The first part is read into a pooled
+     * buffer and its leading bytes decide the content type and the key's extension. Content that fits in one part goes
+     * up with a single PUT; anything larger becomes a multipart upload with one pooled buffer per
+     * in-flight part. Reading the request body happens on the calling thread, the S3 round trips
+     * do not: the returned future completes once S3 has acknowledged every object.
+     *
+     * An image that fits in one part has its metadata stripped and resized variants stored next to
+     * it under the same key with a -{variant} suffix. Larger ones (only possible when the maximum
+     * file size exceeds the part size) are stored as sent, without variants.
+     */
+    public CompletableFuture<StoredImage> uploadFile(InputStream content, UUID userId) throws IOException {
+        byte[] buffer = bufferPool.acquire();
+        PushbackInputStream in = new PushbackInputStream(content, 1);
+        int length;
+        String contentType;
+        boolean fitsBuffer;
+        try {
+            length = readFully(in, buffer);
+            contentType = detectContentType(buffer, length);
+            // A file exactly the size of the buffer still fits; peek one byte to tell it from a larger one
+            int next = length < buffer.length ? -1 : in.read();
+            fitsBuffer = next == -1;
+            if (!fitsBuffer) {
+                in.unread(next);
+            }
+        } catch (IOException | RuntimeException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+
+        // Named after what the bytes are, whatever the client called the file
+        String key = newKey(userId, extensionOf(contentType));
+
+        if (fitsBuffer) {
+            return putImage(key, contentType, buffer, length, () -> bufferPool.release(buffer));
+        }
+        return putMultipart(key, contentType, in, buffer, length)
+                .thenApply(ignored -> new StoredImage(key, List.of()));
+    }
+
+    public static String variantKey(String key, String variant) {
+        return key.substring(0, key.lastIndexOf('.')) + "-" + variant;
+    }
+
+    // Calls release once the buffer is no longer needed. The variants are rendered from it before
+    // anything is stored, so the original and its variants go up together.
+    private CompletableFuture<StoredImage> putImage(String key, String contentType, byte[] buffer, int length,
+                                                    Runnable release) {
+        ProfilePictureProcessor.Processed processed;
         try {
-            PutObjectRequest request = new PutObjectRequest(bucketName, key, file.getInputStream(), metadata)
-                    .withCannedAcl(CannedAccessControlList.Private); // Set file permissions
-            s3Client.putObject(request);
-        } catch (AmazonServiceException e) {
-            throw new RuntimeException("Failed to upload file to S3: " + e.getErrorMessage(), e);
+            checkSize(length);
+            processed = imageProcessor.process(buffer, length, contentType);
+        } catch (RuntimeException e) {
+            release.run();
+            throw e;
         }
 
-        return key;
+        return processed.variants().thenCompose(variants -> {
+            List<CompletableFuture<Void>> puts = new ArrayList<>();
+            puts.add(putSinglePart(key, contentType, buffer, processed.length(), release));
+            for (ProfilePictureProcessor.Variant variant : variants) {
+                puts.add(putObject(variantKey(key, variant.name()), variant.contentType(), variant.data()));
+            }
+            List<String> names = variants.stream().map(ProfilePictureProcessor.Variant::name).toList();
+            return CompletableFuture.allOf(puts.toArray(new CompletableFuture[0]))
+                    .whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            deleteImage(key, names);
+                        }
+                    })
+                    .thenApply(ignored -> new StoredImage(key, names));
+        });
+    }
+
+    private CompletableFuture<Void> putObject(String key, String contentType, byte[] data) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) data.length)
+                .acl(ObjectCannedACL.PRIVATE)
+                .build();
+        return s3Client.putObject(request, AsyncRequestBody.fromBytesUnsafe(data)).thenApply(response -> null);
+    }
+
+    // Calls release when the PUT finishes
+    private CompletableFuture<Void> putSinglePart(String key, String contentType, byte[] buffer, int length,
+                                                  Runnable release) {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) length)
+                .acl(ObjectCannedACL.PRIVATE) // Set file permissions
+                .build();
+
+        return s3Client.putObject(request, AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length)))
+                .whenComplete((response, error) -> release.run())
+                .thenApply(response -> null);
     }
 
-    public void deleteFile(String key) {
+    // Takes ownership of the first buffer; every further part borrows its own from the pool
+    private CompletableFuture<Void> putMultipart(String key, String contentType, InputStream content,
+                                                 byte[] firstBuffer, int firstPartLength) throws IOException {
+        CompletableFuture<String> uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .acl(ObjectCannedACL.PRIVATE)
+                        .build())
+                .thenApply(response -> response.uploadId());
+
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        byte[] buffer = firstBuffer;
+        int length = firstPartLength;
+        long total = 0;
         try {
-            DeleteObjectRequest deleteObjectRequest = new DeleteObjectRequest(bucketName, key);
-            s3Client.deleteObject(deleteObjectRequest);
-        } catch (AmazonServiceException e) {
-            throw new RuntimeException("Failed to delete file from S3: " + e.getErrorMessage(), e);
+            while (length > 0) {
+                total += length;
+                checkSize(total);
+                parts.add(uploadPart(uploadId, key, parts.size() + 1, buffer, length));
+                buffer = null; // now owned by the part upload
+
+                buffer = bufferPool.acquire();
+                length = readFully(content, buffer);
+            }
+            bufferPool.release(buffer);
+        } catch (IOException | RuntimeException e) {
+            bufferPool.release(buffer);
+            abort(uploadId, key, parts);
+            throw e;
+        }
+
+        CompletableFuture<Void> allParts = CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]));
+        return allParts
+                .thenCompose(ignored -> uploadId)
+                .thenCompose(id -> s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(id)
+                        .multipartUpload(CompletedMultipartUpload.builder()
+                                .parts(parts.stream().map(CompletableFuture::join).toList())
+                                .build())
+                        .build()))
+                .<Void>thenApply(response -> null)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        abort(uploadId, key, parts);
+                    }
+                });
+    }
+
+    private CompletableFuture<CompletedPart> uploadPart(CompletableFuture<String> uploadId, String key,
+                                                        int partNumber, byte[] buffer, int length) {
+        return uploadId
+                .thenCompose(id -> s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .uploadId(id)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(buffer, 0, length))))
+                .whenComplete((response, error) -> bufferPool.release(buffer))
+                .thenApply(response -> CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build());
+    }
+
+    // Abort once every started part has settled, so no part lands after the abort
+    private void abort(CompletableFuture<String> uploadId, String key, List<CompletableFuture<CompletedPart>> parts) {
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture[0]))
+                .handle((ignored, error) -> null)
+                .thenCompose(ignored -> uploadId)
+                .thenCompose(id -> s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(id)
+                        .build()));
+    }
+
+    public CompletableFuture<Void> deleteFile(String key) {
+        DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        return s3Client.deleteObject(deleteObjectRequest).thenApply(response -> null);
+    }
+
+    // Deletes a picture and the variants recorded for it
+    public CompletableFuture<Void> deleteImage(String key, List<String> variants) {
+        List<CompletableFuture<Void>> deletes = new ArrayList<>();
+        deletes.add(deleteFile(key));
+        for (String variant : variants) {
+            deletes.add(deleteFile(variantKey(key, variant)));
+        }
+        return CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0]));
+    }
+
+    private void checkSize(long size) {
+        if (size > maxFileSize) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " + (maxFileSize / (1024 * 1024)) + "MB");
+        }
+    }
+
+    // Identify the image type from its magic bytes instead of trusting the client header
+    static String detectContentType(byte[] data, int length) {
+        if (startsWith(data, length, PNG_SIGNATURE)) {
+            return "image/png";
+        }
+        if (startsWith(data, length, JPEG_SIGNATURE)) {
+            return "image/jpeg";
+        }
+        throw new IllegalArgumentException("Invalid file type. Only PNG, JPG, and JPEG are allowed");
+    }
+
+    // The key extension of an allowed picture type, as isUploadKey expects it
+    static String extensionOf(String contentType) {
+        return switch (contentType) {
+            case "image/png" -> ".png";
+            case "image/jpeg" -> ".jpg";
+            default -> throw new IllegalArgumentException("Invalid file type. Only PNG, JPG, and JPEG are allowed");
+        };
+    }
+
+    private static boolean startsWith(byte[] data, int length, byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (data[i] != signature[i]) {
+                return false;
+            }
         }
+        return true;
     }
 
-    private String getFileExtension(String filename) {
-        if (filename == null) {
-            return ".jpg";
+    // Fill the buffer from the stream; returns fewer bytes than its length only at end of stream
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        while (total < buffer.length) {
+            int read = in.read(buffer, total, buffer.length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
         }
-        int lastDotIndex = filename.lastIndexOf(".");
-        return (lastDotIndex == -1) ? ".jpg" : filename.substring(lastDotIndex);
+        return total;
     }
 
     public String getBucketName() {
@@ -0,0 +1,104 @@
+package healthwebapp.example.restapi.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over email addresses, sized for a capacity and a false-positive rate. Bits are set
+ * with compare-and-set, so adds and lookups need no lock. A lookup never misses an email that was
+ * added; emails cannot be removed.
+ */
+final class EmailBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private final AtomicLong added = new AtomicLong();
+
+    private EmailBloomFilter(long bitCount, int hashCount, long capacity) {
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = hashCount;
+        this.capacity = capacity;
+    }
+
+    // m = -n ln p / (ln 2)^2 bits and k = m/n ln 2 hashes, the optimum for n entries at rate p
+    static EmailBloomFilter forCapacity(long capacity, double falsePositiveRate) {
+        if (capacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter needs a positive capacity and a false-positive rate in (0, 1)");
+        }
+        long bits = Math.max(64, (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2)));
+        int hashes = Math.max(1, (int) Math.round((double) bits / capacity * LN2));
+        return new EmailBloomFilter(bits, hashes, capacity);
+    }
+
+    void add(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int word = (int) (bit >>> 6);
+            long current;
+            while (((current = words.get(word)) & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+            }
+        }
+        added.incrementAndGet();
+    }
+
+    boolean mightContain(String email) {
+        long h1 = hash(email);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    // Adds so far, including repeats of the same email
+    long added() {
+        return added.get();
+    }
+
+    long sizeInBytes() {
+        return words.length() * 8L;
+    }
+
+    // The false-positive rate to expect at the current fill: (1 - e^(-kn/m))^k
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-hashCount * (double) added.get() / bitCount), hashCount);
+    }
+
+    // 64-bit FNV-1a over the chars, finished with mix so every output bit depends on every input bit
+    private static long hash(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h ^= email.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // The MurmurHash3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
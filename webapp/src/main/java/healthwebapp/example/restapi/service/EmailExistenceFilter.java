@@ -0,0 +1,164 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.repository.UserBatchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "might this email be registered?" from a Bloom filter of users.email, so signups with a
+ * new email (nearly all of them) skip the duplicate pre-check query. A "no" can be wrong for emails
+ * registered through another instance since the last rebuild; the unique constraint on the INSERT
+ * settles those, so a stale filter costs a wasted hash, never a wrong answer.
+ *
+ * The filter is built on the scheduler thread by streaming the email column, and answers "maybe"
+ * until then. Deleted emails cannot be taken out; they are counted, and the filter is rebuilt once
+ * they or the number of entries outgrow what it was sized for, and at least every max-age-minutes
+ * to pick up other instances' signups.
+ */
+@Component
+public class EmailExistenceFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailExistenceFilter.class);
+
+    private final UserBatchRepository batchRepository;
+    private final TransactionTemplate readTransaction;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long minCapacity;
+    private final int fetchSize;
+    private final long maxAgeNanos;
+    private volatile EmailBloomFilter current;
+    private volatile long builtAt;
+    // Also receives adds while a rebuild streams the table, so none are lost in the swap
+    private volatile EmailBloomFilter building;
+    private final AtomicLong removed = new AtomicLong();
+    private final Counter absent;
+    private final Counter present;
+    private final Counter falsePositives;
+
+    public EmailExistenceFilter(UserBatchRepository batchRepository,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${user.email-filter.enabled:true}") boolean enabled,
+                                @Value("${user.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                                @Value("${user.email-filter.min-capacity:100000}") long minCapacity,
+                                @Value("${user.email-filter.fetch-size:5000}") int fetchSize,
+                                @Value("${user.email-filter.max-age-minutes:60}") long maxAgeMinutes) {
+        this.batchRepository = batchRepository;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = minCapacity;
+        this.fetchSize = fetchSize;
+        this.maxAgeNanos = TimeUnit.MINUTES.toNanos(maxAgeMinutes);
+
+        this.absent = Counter.builder("user.email_filter.lookups").tag("result", "absent")
+                .description("Duplicate-email checks answered by the filter alone").register(meterRegistry);
+        this.present = Counter.builder("user.email_filter.lookups").tag("result", "maybe")
+                .description("Duplicate-email checks that went on to query the database").register(meterRegistry);
+        this.falsePositives = Counter.builder("user.email_filter.false_positives")
+                .description("Queries made for emails the filter reported but nobody had registered")
+                .register(meterRegistry);
+        Gauge.builder("user.email_filter.bytes", this, filter -> filter.current == null ? 0 : filter.current.sizeInBytes())
+                .description("Memory held by the email filter's bit array")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("user.email_filter.entries", this, filter -> filter.current == null ? 0 : filter.current.added())
+                .register(meterRegistry);
+        Gauge.builder("user.email_filter.expected_fpp", this,
+                        filter -> filter.current == null ? 1 : filter.current.expectedFalsePositiveRate())
+                .description("False-positive rate expected at the filter's current fill")
+                .register(meterRegistry);
+    }
+
+    // False means the email is certainly not registered (as far as this instance has seen)
+    public boolean mightExist(String email) {
+        EmailBloomFilter filter = current;
+        if (filter == null || filter.mightContain(email)) {
+            present.increment();
+            return true;
+        }
+        absent.increment();
+        return false;
+    }
+
+    // Inside a transaction the email is only recorded once it commits, so a rolled-back insert leaves no
+    // false positive behind. A signup checking in between gets a "no" and is settled by the unique constraint.
+    public void added(String email) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(email);
+                }
+            });
+        } else {
+            add(email);
+        }
+    }
+
+    private void add(String email) {
+        EmailBloomFilter filter = current;
+        if (filter != null) {
+            filter.add(email);
+        }
+        EmailBloomFilter next = building;
+        if (next != null) {
+            next.add(email);
+        }
+    }
+
+    public void removed() {
+        removed.incrementAndGet();
+    }
+
+    // mightExist said maybe, but the query found nobody
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${user.email-filter.check-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        EmailBloomFilter filter = current;
+        if (filter == null || filter.added() > filter.capacity() || removed.get() > filter.capacity() / 4
+                || System.nanoTime() - builtAt > maxAgeNanos) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        long started = System.nanoTime();
+        builtAt = started;
+        readTransaction.executeWithoutResult(status -> {
+            // Twice the current users, so the filter lasts a while before it fills up
+            long users = batchRepository.countUsers();
+            EmailBloomFilter next = EmailBloomFilter.forCapacity(Math.max(minCapacity, users * 2), falsePositiveRate);
+            building = next;
+            removed.set(0);
+            batchRepository.streamEmails(fetchSize, rs -> next.add(rs.getString(1)));
+            current = next;
+            building = null;
+        });
+        EmailBloomFilter filter = current;
+        logger.info("Email filter built from {} users in {} ms: {} KB for {} entries at {} false positives",
+                filter.added(), (System.nanoTime() - started) / 1_000_000, filter.sizeInBytes() / 1024,
+                filter.capacity(), falsePositiveRate);
+    }
+}
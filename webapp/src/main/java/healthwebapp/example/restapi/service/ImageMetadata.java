@@ -0,0 +1,177 @@
+package healthwebapp.example.restapi.service;
+
+/**
+ * Removes metadata from an uploaded image without re-encoding it. JPEGs lose their EXIF, XMP,
+ * IPTC and comment segments, PNGs their text, time and EXIF chunks; colour profiles are kept.
+ * The image is rewritten in place, since nothing is ever added in front of what was read.
+ */
+final class ImageMetadata {
+
+    // Segments and chunks that can carry camera details, GPS positions or editing history
+    private static final int JPEG_APP1 = 0xE1;
+    private static final int JPEG_APP13 = 0xED;
+    private static final int JPEG_COM = 0xFE;
+    private static final int JPEG_SOS = 0xDA;
+    private static final String[] PNG_DROPPED_CHUNKS = {"tEXt", "zTXt", "iTXt", "eXIf", "tIME"};
+
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    // APP1 marker and length, EXIF header, big-endian TIFF header, and one IFD holding only the orientation
+    private static final byte[] ORIENTATION_SEGMENT = {
+            (byte) 0xFF, (byte) JPEG_APP1, 0, 34,
+            'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1,
+            0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 1, 0, 0,
+            0, 0, 0, 0
+    };
+    private static final int ORIENTATION_VALUE_OFFSET = 28;
+
+    record Stripped(int length, int orientation) {
+    }
+
+    private ImageMetadata() {
+    }
+
+    /**
+     * Strips data[0, length) in place and returns the new length with the EXIF orientation (1 when
+     * absent). JPEGs keep a minimal EXIF segment holding just the orientation, so they still display
+     * upright. Anything unparseable from some point on is kept as it is.
+     */
+    static Stripped strip(byte[] data, int length, String contentType) {
+        return switch (contentType) {
+            case "image/jpeg" -> stripJpeg(data, length);
+            case "image/png" -> new Stripped(stripPng(data, length), 1);
+            default -> new Stripped(length, 1);
+        };
+    }
+
+    private static Stripped stripJpeg(byte[] data, int length) {
+        int orientation = 1;
+        int read = 2; // after SOI
+        int write = 2;
+        while (read + 4 <= length && data[read] == (byte) 0xFF) {
+            int marker = data[read + 1] & 0xFF;
+            if (marker == 0xFF) {
+                read++; // fill byte
+                continue;
+            }
+            // Entropy-coded data follows the first scan header; copy the rest untouched
+            if (marker == JPEG_SOS) {
+                break;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                data[write++] = data[read++];
+                data[write++] = data[read++];
+                continue;
+            }
+            int end = read + 2 + readShort(data, read + 2, false);
+            if (end < read + 4 || end > length) {
+                break;
+            }
+
+            if (marker == JPEG_APP1 && orientation == 1 && isExif(data, read + 4, end)) {
+                orientation = readOrientation(data, read + 4 + EXIF_HEADER.length, end);
+                // The segment held at least an IFD with this entry, so the minimal one fits in its place
+                if (orientation != 1 && end - read >= ORIENTATION_SEGMENT.length) {
+                    System.arraycopy(ORIENTATION_SEGMENT, 0, data, write, ORIENTATION_SEGMENT.length);
+                    data[write + ORIENTATION_VALUE_OFFSET + 1] = (byte) orientation;
+                    write += ORIENTATION_SEGMENT.length;
+                } else {
+                    orientation = 1;
+                }
+            } else if (marker != JPEG_APP1 && marker != JPEG_APP13 && marker != JPEG_COM) {
+                System.arraycopy(data, read, data, write, end - read);
+                write += end - read;
+            }
+            read = end;
+        }
+        System.arraycopy(data, read, data, write, length - read);
+        return new Stripped(write + length - read, orientation);
+    }
+
+    private static int stripPng(byte[] data, int length) {
+        int read = 8; // after the signature
+        int write = 8;
+        while (read + 12 <= length) {
+            long chunkLength = readInt(data, read, false) & 0xFFFFFFFFL;
+            long end = read + 12 + chunkLength; // length, type, data, CRC
+            if (end > length) {
+                break;
+            }
+            if (!isDroppedChunk(data, read + 4)) {
+                System.arraycopy(data, read, data, write, (int) end - read);
+                write += (int) end - read;
+            }
+            read = (int) end;
+        }
+        System.arraycopy(data, read, data, write, length - read);
+        return write + length - read;
+    }
+
+    private static boolean isDroppedChunk(byte[] data, int offset) {
+        for (String type : PNG_DROPPED_CHUNKS) {
+            if (data[offset] == type.charAt(0) && data[offset + 1] == type.charAt(1)
+                    && data[offset + 2] == type.charAt(2) && data[offset + 3] == type.charAt(3)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isExif(byte[] data, int offset, int end) {
+        if (end - offset < EXIF_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < EXIF_HEADER.length; i++) {
+            if (data[offset + i] != EXIF_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Looks for the orientation entry in IFD0 of the TIFF structure starting at tiff
+    private static int readOrientation(byte[] data, int tiff, int end) {
+        if (end - tiff < 8) {
+            return 1;
+        }
+        boolean littleEndian;
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (data[tiff] == 'M' && data[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return 1;
+        }
+        long ifd = tiff + (readInt(data, tiff + 4, littleEndian) & 0xFFFFFFFFL);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, (int) ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(data, entry, littleEndian) == ORIENTATION_TAG) {
+                int value = readShort(data, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int first = data[offset] & 0xFF;
+        int second = data[offset + 1] & 0xFF;
+        return littleEndian ? (second << 8) | first : (first << 8) | second;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean littleEndian) {
+        int high = readShort(data, offset, littleEndian);
+        int low = readShort(data, offset + 2, littleEndian);
+        return littleEndian ? (low << 16) | high : (high << 16) | low;
+    }
+}
@@ -0,0 +1,64 @@
+package healthwebapp.example.restapi.service;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-capacity pool of upload part buffers. Buffers are allocated lazily up to maxBuffers
+ * and reused afterwards, so concurrent uploads never hold more than
+ * maxBuffers * bufferSize bytes of heap between them.
+ */
+class PartBufferPool {
+
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final long acquireTimeoutMs;
+    private final BlockingQueue<byte[]> available;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    PartBufferPool(int bufferSize, int maxBuffers, long acquireTimeoutMs) {
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.available = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    byte[] acquire() throws IOException {
+        byte[] buffer = available.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+
+        // Allocate a new buffer while we are still under the cap
+        int current;
+        while ((current = allocated.get()) < maxBuffers) {
+            if (allocated.compareAndSet(current, current + 1)) {
+                return new byte[bufferSize];
+            }
+        }
+
+        try {
+            buffer = available.poll(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an upload buffer", e);
+        }
+        if (buffer == null) {
+            throw new IOException("Upload capacity exhausted, no buffer available");
+        }
+        return buffer;
+    }
+
+    void release(byte[] buffer) {
+        if (buffer != null) {
+            available.offer(buffer);
+        }
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,120 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs password hashing off the request threads, on a fixed pool with a bounded queue. Signups and
+ * password changes wait for their hash asynchronously; once the queue is full they fail straight away
+ * with a RejectedExecutionException (answered with 503) instead of piling up BCrypt work.
+ *
+ * Logins whose stored hash uses an older algorithm or cost are rehashed here in the background, one
+ * at a time per user; the login itself does not wait. Bulk imports keep their own pool.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor pool;
+    private final Set<String> upgrading = ConcurrentHashMap.newKeySet();
+    private final Timer hashTime;
+    private final Counter rejected;
+    private final Counter upgraded;
+
+    public PasswordHashingService(PasswordEncoder passwordEncoder,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${auth.password.hash-threads:0}") int threads,
+                                  @Value("${auth.password.hash-queue-capacity:64}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+
+        // BCrypt is CPU-bound; by default leave half the cores to request handling
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("password-hash-");
+        threadFactory.setDaemon(true);
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        this.hashTime = Timer.builder("auth.password.hash")
+                .description("Time to hash a password on the hashing pool")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.rejected")
+                .description("Hashes refused because the hashing pool was saturated")
+                .register(meterRegistry);
+        this.upgraded = Counter.builder("auth.password.upgraded")
+                .description("Stored hashes replaced with the current algorithm and cost after a login")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    // Completes with RejectedExecutionException when the pool is saturated
+    public CompletableFuture<String> encode(String rawPassword) {
+        try {
+            return CompletableFuture.supplyAsync(() -> hashTime.record(() -> passwordEncoder.encode(rawPassword)), pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Full check of a presented password against a stored hash, for callers that must not block (the
+    // reactive profile's Basic auth). Fails with RejectedExecutionException like encode.
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        try {
+            return CompletableFuture.supplyAsync(() -> passwordEncoder.matches(rawPassword, encodedPassword), pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Rehashes the password a user just logged in with and hands it to passwords for storage. Skipped
+     * while the same user is already being upgraded, or when the pool is saturated; the next login
+     * tries again.
+     */
+    public void upgrade(UserDetails user, String rawPassword, UserDetailsPasswordService passwords) {
+        String email = user.getUsername();
+        if (!upgrading.add(email)) {
+            return;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    passwords.updatePassword(user, hashTime.record(() -> passwordEncoder.encode(rawPassword)));
+                    upgraded.increment();
+                } catch (RuntimeException e) {
+                    logger.warn("Could not upgrade the password hash of {}: {}", email, e.getMessage());
+                } finally {
+                    upgrading.remove(email);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            upgrading.remove(email);
+            rejected.increment();
+        }
+    }
+}
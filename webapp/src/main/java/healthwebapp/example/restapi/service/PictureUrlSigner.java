@@ -0,0 +1,86 @@
+package healthwebapp.example.restapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pre-signed GET URLs for the private picture objects. Signing is local SigV4 work with no network
+ * call. A picture and its variants are signed together and reused for the first part of their
+ * lifetime, so repeated GET /v1/user/self calls hand out the same URLs (and the same ETag). URLs are
+ * never handed out with less than min-remaining-seconds left; responses carrying them may be cached
+ * by clients for freshFor.
+ */
+@Component
+public class PictureUrlSigner {
+
+    /** URLs for a picture and its variants (in the order requested), all valid until expiresAt. */
+    public record SignedUrls(String url, List<String> variantUrls, Instant expiresAt) {
+    }
+
+    private final S3Presigner presigner;
+    private final String bucketName;
+    private final Duration urlTtl;
+    private final Duration minRemaining;
+    private final Cache<String, SignedUrls> urls;
+
+    public PictureUrlSigner(S3Presigner presigner,
+                            MeterRegistry meterRegistry,
+                            @Value("${aws.s3.bucket-name}") String bucketName,
+                            @Value("${aws.s3.download.url-ttl-seconds:3600}") long urlTtlSeconds,
+                            @Value("${aws.s3.download.min-remaining-seconds:900}") long minRemainingSeconds,
+                            @Value("${user.cache.max-size:10000}") long maxSize) {
+        if (minRemainingSeconds >= urlTtlSeconds) {
+            throw new IllegalArgumentException("aws.s3.download.min-remaining-seconds must be below url-ttl-seconds");
+        }
+        this.presigner = presigner;
+        this.bucketName = bucketName;
+        this.urlTtl = Duration.ofSeconds(urlTtlSeconds);
+        this.minRemaining = Duration.ofSeconds(minRemainingSeconds);
+        // Keys are never reused for a different object, so an entry only goes stale by age
+        this.urls = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(urlTtl.minus(minRemaining))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, urls, "pictures.signedUrls");
+    }
+
+    // One entry per picture; the variants stored with a key never change
+    public SignedUrls sign(String key, List<String> variantKeys) {
+        return urls.get(key, ignored -> {
+            // Taken before signing, so it never overstates how long any of the URLs lasts
+            Instant signedAt = Instant.now();
+            List<String> variantUrls = new ArrayList<>(variantKeys.size());
+            for (String variantKey : variantKeys) {
+                variantUrls.add(presign(variantKey));
+            }
+            return new SignedUrls(presign(key), variantUrls, signedAt.plus(urlTtl));
+        });
+    }
+
+    // How long a response holding a URL that expires at expiresAt may be reused
+    public Duration freshFor(Instant expiresAt, Instant now) {
+        Duration fresh = Duration.between(now, expiresAt).minus(minRemaining);
+        return fresh.isNegative() ? Duration.ZERO : fresh;
+    }
+
+    private String presign(String key) {
+        PresignedGetObjectRequest presigned = presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(urlTtl)
+                .getObjectRequest(request -> request.bucket(bucketName).key(key))
+                .build());
+        return presigned.url().toString();
+    }
+}
@@ -0,0 +1,260 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns an uploaded profile picture into smaller variants. The image is decoded once, subsampled
+ * while decoding to about twice the largest variant, turned upright, and then scaled down step by
+ * step, each size from the one above it. Variants are JPEG (PNG when the source has transparency),
+ * plus WebP for user.picture.webp-sizes when an ImageIO WebP writer is on the classpath.
+ *
+ * Decoding runs on a bounded pool. When the pool is saturated, or the image cannot be decoded, the
+ * picture is stored without variants rather than failing the upload.
+ */
+@Service
+public class ProfilePictureProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilePictureProcessor.class);
+
+    private static final float JPEG_QUALITY = 0.85f;
+    private static final float WEBP_QUALITY = 0.8f;
+
+    /** A rendered variant; name is its size and extension, e.g. "256.jpg". */
+    public record Variant(String name, String contentType, byte[] data) {
+    }
+
+    /** The stripped length of the original, and its variants once rendered (possibly none). */
+    public record Processed(int length, CompletableFuture<List<Variant>> variants) {
+    }
+
+    private final TreeSet<Integer> sizes;
+    private final TreeSet<Integer> webpSizes;
+    private final TreeSet<Integer> allSizes;
+    private final int largestSize;
+    private final long maxPixels;
+    private final ThreadPoolExecutor pool;
+    private final Timer renderTime;
+    private final Counter rejected;
+    private final Counter failed;
+
+    public ProfilePictureProcessor(@Value("${user.picture.variant-sizes:128,256,512}") List<Integer> sizes,
+                                   @Value("${user.picture.webp-sizes:256}") List<Integer> webpSizes,
+                                   @Value("${user.picture.threads:0}") int threads,
+                                   @Value("${user.picture.queue-capacity:32}") int queueCapacity,
+                                   @Value("${user.picture.max-pixels:40000000}") long maxPixels,
+                                   MeterRegistry meterRegistry) {
+        this.sizes = new TreeSet<>(Comparator.reverseOrder());
+        this.sizes.addAll(sizes);
+        this.webpSizes = new TreeSet<>(Comparator.reverseOrder());
+        if (ImageIO.getImageWritersByMIMEType("image/webp").hasNext()) {
+            this.webpSizes.addAll(webpSizes);
+        } else if (!webpSizes.isEmpty()) {
+            logger.info("No ImageIO WebP writer available; profile pictures get no WebP variants");
+        }
+        this.allSizes = new TreeSet<>(this.sizes);
+        this.allSizes.addAll(this.webpSizes);
+        this.largestSize = allSizes.isEmpty() ? 0 : allSizes.first();
+        this.maxPixels = maxPixels;
+
+        // Decoding and scaling are CPU-bound; by default leave half the cores to request handling
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("user-picture-");
+        threadFactory.setDaemon(true);
+        this.pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+
+        this.renderTime = Timer.builder("user.picture.render")
+                .description("Time to decode a profile picture and encode its variants")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("user.picture.skipped").tag("reason", "busy").register(meterRegistry);
+        this.failed = Counter.builder("user.picture.skipped").tag("reason", "undecodable").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Strips the metadata of data[0, length) in place on the calling thread and starts rendering the
+     * variants from it. The caller must keep the array unchanged until the variants complete; the
+     * returned future never completes exceptionally.
+     */
+    public Processed process(byte[] data, int length, String contentType) {
+        ImageMetadata.Stripped stripped = ImageMetadata.strip(data, length, contentType);
+        if (largestSize == 0) {
+            return new Processed(stripped.length(), CompletableFuture.completedFuture(List.of()));
+        }
+
+        CompletableFuture<List<Variant>> variants;
+        try {
+            variants = CompletableFuture.supplyAsync(
+                    () -> renderTime.record(() -> render(data, stripped.length(), stripped.orientation())), pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            logger.warn("Profile picture pool saturated; storing the picture without variants");
+            return new Processed(stripped.length(), CompletableFuture.completedFuture(List.of()));
+        }
+        return new Processed(stripped.length(), variants.exceptionally(e -> {
+            failed.increment();
+            logger.warn("Could not render profile picture variants: {}", e.getMessage());
+            return List.of();
+        }));
+    }
+
+    private List<Variant> render(byte[] data, int length, int orientation) {
+        try {
+            BufferedImage image = orient(decode(data, length), orientation);
+            boolean alpha = image.getColorModel().hasAlpha();
+            int longest = Math.max(image.getWidth(), image.getHeight());
+
+            List<Variant> variants = new ArrayList<>();
+            BufferedImage current = image;
+            for (int size : allSizes) {
+                // Never upscale; small sources still get re-encoded variants without metadata
+                double scale = Math.min(1.0, (double) size / longest);
+                current = scale(current, Math.max(1, (int) Math.round(image.getWidth() * scale)),
+                        Math.max(1, (int) Math.round(image.getHeight() * scale)), alpha);
+                if (sizes.contains(size)) {
+                    variants.add(alpha
+                            ? new Variant(size + ".png", "image/png", encode(current, "png", -1))
+                            : new Variant(size + ".jpg", "image/jpeg", encode(current, "jpeg", JPEG_QUALITY)));
+                }
+                if (webpSizes.contains(size)) {
+                    variants.add(new Variant(size + ".webp", "image/webp", encode(current, "webp", WEBP_QUALITY)));
+                }
+            }
+            return variants;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    // Checks the dimensions from the header before allocating any pixels
+    private BufferedImage decode(byte[] data, int length) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data, 0, length))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IIOException("No image reader for the upload");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IIOException("Image of " + width + "x" + height + " exceeds " + maxPixels + " pixels");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (2 * largestSize));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Applies an EXIF orientation (2-8) so the variants need no metadata to display upright
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        if (transform == null) {
+            return image;
+        }
+        boolean swap = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swap ? h : w, swap ? w : h,
+                image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        graphics.drawImage(image, transform, null);
+        graphics.dispose();
+        return oriented;
+    }
+
+    // Halves with bilinear filtering until the target is reached; one bilinear pass over a large
+    // reduction skips most source pixels and aliases
+    private static BufferedImage scale(BufferedImage image, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            BufferedImage next = new BufferedImage(w, h, type);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(current, 0, 0, w, h, null);
+            graphics.dispose();
+            current = next;
+        } while (w != width || h != height);
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, String format, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (quality >= 0 && param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if (param.getCompressionTypes() != null && param.getCompressionType() == null) {
+                    param.setCompressionType(param.getCompressionTypes()[0]);
+                }
+                param.setCompressionQuality(quality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,72 @@
+package healthwebapp.example.restapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a user's own reads on the primary for a short window after the user was written, so a
+ * lagging replica cannot hand back the row as it was before the change (or no row after a signup).
+ * Read-only transactions otherwise go to the replica (see ReplicaRoutingDataSource).
+ *
+ * Writes are remembered per instance; a request that lands on another instance within the window
+ * can still read from the replica.
+ */
+@Component
+public class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+
+    private final Cache<String, Boolean> recentWrites;
+
+    public ReadYourWrites(@Value("${db.replica.read-your-writes-ms:5000}") long windowMs,
+                          @Value("${db.replica.read-your-writes-max-size:10000}") long maxSize) {
+        this.recentWrites = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(windowMs))
+                .build();
+    }
+
+    // True while the current thread runs inside onPrimary
+    public static boolean isPinnedToPrimary() {
+        return PRIMARY.get() != null;
+    }
+
+    public void recordWrite(Long id, String email) {
+        if (id != null) {
+            recentWrites.put("id:" + id, Boolean.TRUE);
+        }
+        if (email != null) {
+            recentWrites.put("email:" + email, Boolean.TRUE);
+        }
+    }
+
+    public boolean recentlyWritten(Long id) {
+        return id != null && recentWrites.getIfPresent("id:" + id) != null;
+    }
+
+    public boolean recentlyWritten(String email) {
+        return email != null && recentWrites.getIfPresent("email:" + email) != null;
+    }
+
+    /**
+     * Run the lookup with read-only work routed to the primary. Connections are picked on the first
+     * statement, so this covers a read-only transaction opened by the caller as long as it has not
+     * queried the replica yet.
+     */
+    public <T> T onPrimary(Supplier<T> lookup) {
+        if (isPinnedToPrimary()) {
+            return lookup.get();
+        }
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return lookup.get();
+        } finally {
+            PRIMARY.remove();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package healthwebapp.example.restapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Ids (jti) of revoked bearer tokens. Each id is only kept until its token would have been rejected
+ * as expired anyway, so the list stays as small as the number of tokens revoked within one token
+ * lifetime. There is no size bound: evicting an entry early would revive the token.
+ *
+ * Like the profile cache it is per instance, so a revocation is only seen by the instance that
+ * handled it; elsewhere an access token stays usable until it expires.
+ */
+@Component
+public class TokenDenyList {
+
+    // Expired tokens are still accepted within this skew (JwtTimestampValidator's default)
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(60);
+
+    private final Cache<UUID, Instant> denied;
+
+    public TokenDenyList(MeterRegistry meterRegistry) {
+        this.denied = Caffeine.newBuilder()
+                .expireAfter(new Expiry<UUID, Instant>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, Instant expiresAt, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), expiresAt.plus(CLOCK_SKEW)).toNanos());
+                    }
+
+                    // A token is only ever denied once; keep its original deadline
+                    @Override
+                    public long expireAfterUpdate(UUID id, Instant expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, Instant expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        Gauge.builder("auth.tokens.denied", denied, Cache::estimatedSize)
+                .description("Revoked tokens that have not expired yet")
+                .register(meterRegistry);
+    }
+
+    public void deny(String tokenId, Instant expiresAt) {
+        UUID id = parse(tokenId);
+        if (id != null && expiresAt != null) {
+            denied.put(id, expiresAt);
+        }
+    }
+
+    public boolean isDenied(String tokenId) {
+        UUID id = parse(tokenId);
+        return id != null && denied.getIfPresent(id) != null;
+    }
+
+    // Token ids are issued as UUIDs; anything else cannot be on the list
+    private static UUID parse(String tokenId) {
+        try {
+            return tokenId == null ? null : UUID.fromString(tokenId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package healthwebapp.example.restapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import healthwebapp.example.restapi.dto.UserImportResult;
+import healthwebapp.example.restapi.dto.UserImportRow;
+import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.entity.VerificationToken;
+import healthwebapp.example.restapi.repository.UserBatchRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Bulk onboarding and export of users as NDJSON (one JSON object per line).
+ *
+ * Imports are read line by line and written in chunks of user.import.batch-size: each chunk is
+ * checked against existing emails in one query, its passwords are hashed on a fixed pool shared by
+ * all imports, and users, verification tokens and outbox messages are inserted as JDBC batches in
+ * one transaction. Rejected lines are reported; the rest of the file still imports. Exports stream
+ * rows from a database cursor straight to the response.
+ */
+@Service
+public class UserBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserBulkService.class);
+
+    // Rejected lines listed in the response; the count covers all of them
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final UserBatchRepository batchRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final VerificationTokenService tokenService;
+    private final VerificationMessageEncoder messageEncoder;
+    private final EmailExistenceFilter emailExistenceFilter;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader rowReader;
+    private final TransactionTemplate writeTransaction;
+    private final TransactionTemplate readTransaction;
+    private final ExecutorService hashPool;
+    private final int batchSize;
+    private final int exportFetchSize;
+
+    public UserBulkService(UserBatchRepository batchRepository,
+                           PasswordEncoder passwordEncoder,
+                           VerificationTokenService tokenService,
+                           VerificationMessageEncoder messageEncoder,
+                           EmailExistenceFilter emailExistenceFilter,
+                           Validator validator,
+                           ObjectMapper objectMapper,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${user.import.batch-size:500}") int batchSize,
+                           @Value("${user.import.hash-threads:0}") int hashThreads,
+                           @Value("${user.export.fetch-size:1000}") int exportFetchSize) {
+        this.batchRepository = batchRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.tokenService = tokenService;
+        this.messageEncoder = messageEncoder;
+        this.emailExistenceFilter = emailExistenceFilter;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.rowReader = objectMapper.readerFor(UserImportRow.class);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.exportFetchSize = exportFetchSize;
+
+        // BCrypt is CPU-bound; by default leave half the cores to request handling
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.hashPool = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("user-import-hash-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashPool.shutdown();
+    }
+
+    public UserImportResult importUsers(InputStream body) throws IOException {
+        ImportReport report = new ImportReport();
+        List<PendingRow> chunk = new ArrayList<>(batchSize);
+        Set<String> chunkEmails = new HashSet<>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            UserImportRow row;
+            try {
+                row = rowReader.readValue(line);
+            } catch (JsonProcessingException e) {
+                report.reject(lineNumber, "Malformed JSON");
+                continue;
+            }
+            String error = validate(row);
+            if (error != null) {
+                report.reject(lineNumber, error);
+                continue;
+            }
+            // Duplicates across chunks are caught by the existing-email check, since earlier chunks are committed
+            if (!chunkEmails.add(row.email())) {
+                report.reject(lineNumber, "Duplicate email in import");
+                continue;
+            }
+
+            chunk.add(new PendingRow(lineNumber, row));
+            if (chunk.size() >= batchSize) {
+                writeChunk(chunk, report);
+                chunk.clear();
+                chunkEmails.clear();
+            }
+        }
+        writeChunk(chunk, report);
+
+        return report.result();
+    }
+
+    // Writes every user, without passwords, as one JSON object per line
+    public void exportUsers(OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            readTransaction.executeWithoutResult(status ->
+                    batchRepository.exportUsers(exportFetchSize, rs -> writeUser(generator, rs)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String validate(UserImportRow row) {
+        Set<ConstraintViolation<UserImportRow>> violations = validator.validate(row);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        ConstraintViolation<UserImportRow> violation = violations.iterator().next();
+        return violation.getPropertyPath() + " " + violation.getMessage();
+    }
+
+    private void writeChunk(List<PendingRow> chunk, ImportReport report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<PendingRow> accepted = withoutExistingEmails(chunk, report);
+
+        // Hash the chunk in parallel; the pool size bounds how many cores imports can take
+        List<CompletableFuture<String>> hashes = new ArrayList<>(accepted.size());
+        for (PendingRow pending : accepted) {
+            String password = pending.row().password();
+            hashes.add(CompletableFuture.supplyAsync(() -> passwordEncoder.encode(password), hashPool));
+        }
+        List<User> users = new ArrayList<>(accepted.size());
+        for (int i = 0; i < accepted.size(); i++) {
+            UserImportRow row = accepted.get(i).row();
+            User user = new User();
+            user.setEmail(row.email());
+            user.setPassword(hashes.get(i).join());
+            user.setFirstName(row.firstName());
+            user.setLastName(row.lastName());
+            users.add(user);
+        }
+
+        try {
+            insert(users);
+        } catch (DuplicateKeyException e) {
+            // A signup for one of these emails committed after the check; drop it and retry the rest once
+            logger.warn("Import chunk hit an email registered concurrently; retrying without it");
+            accepted = withoutExistingEmails(accepted, report);
+            Set<String> retained = new HashSet<>();
+            accepted.forEach(pending -> retained.add(pending.row().email()));
+            users.removeIf(user -> !retained.contains(user.getEmail()));
+            insert(users);
+        }
+        report.imported += accepted.size();
+    }
+
+    private List<PendingRow> withoutExistingEmails(List<PendingRow> chunk, ImportReport report) {
+        Set<String> existing = batchRepository.findExistingEmails(chunk.stream().map(pending -> pending.row().email()).toList());
+        List<PendingRow> accepted = new ArrayList<>(chunk.size());
+        for (PendingRow pending : chunk) {
+            if (existing.contains(pending.row().email())) {
+                report.reject(pending.line(), "Email already in use");
+            } else {
+                accepted.add(pending);
+            }
+        }
+        return accepted;
+    }
+
+    // Users, their tokens and their verification messages commit together, as in UserService.createUser
+    private void insert(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        writeTransaction.executeWithoutResult(status -> {
+            Map<String, Long> ids = batchRepository.insertUsers(users, Timestamp.valueOf(now));
+            users.forEach(user -> emailExistenceFilter.added(user.getEmail()));
+
+            List<VerificationToken> tokens = new ArrayList<>(users.size());
+            List<OutboxMessage> messages = new ArrayList<>(users.size());
+            for (User user : users) {
+                Long id = ids.get(user.getEmail());
+                VerificationTokenService.NewToken token = tokenService.newToken(id, now);
+                tokens.add(token.row());
+                UserVerificationPayload payload = new UserVerificationPayload(
+                        id, user.getEmail(), token.issued().token(), token.issued().expiresAt());
+                messages.add(OutboxMessage.pending(messageEncoder.encode(payload), messageEncoder.getContentType(), now));
+            }
+            batchRepository.insertVerificationTokens(tokens);
+            batchRepository.insertOutboxMessages(messages);
+        });
+    }
+
+    private static void writeUser(JsonGenerator generator, ResultSet rs) throws SQLException {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeStringField("email", rs.getString("email"));
+            generator.writeStringField("firstName", rs.getString("first_name"));
+            generator.writeStringField("lastName", rs.getString("last_name"));
+            generator.writeBooleanField("verified", rs.getBoolean("is_verified"));
+            writeTimestamp(generator, "accountCreated", rs.getTimestamp("account_created"));
+            writeTimestamp(generator, "accountUpdated", rs.getTimestamp("account_updated"));
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            // Usually the client went away; abandons the cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeTimestamp(JsonGenerator generator, String field, Timestamp value) throws IOException {
+        if (value == null) {
+            generator.writeNullField(field);
+        } else {
+            generator.writeStringField(field, value.toLocalDateTime().toString());
+        }
+    }
+
+    private record PendingRow(long line, UserImportRow row) {
+    }
+
+    private static final class ImportReport {
+
+        private long imported;
+        private long rejected;
+        private final List<UserImportResult.RowError> errors = new ArrayList<>();
+
+        void reject(long line, String error) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new UserImportResult.RowError(line, error));
+            }
+        }
+
+        // Lines rejected when their chunk is written are found after later lines failed to parse
+        UserImportResult result() {
+            errors.sort(Comparator.comparingLong(UserImportResult.RowError::line));
+            return new UserImportResult(imported, rejected, errors);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package healthwebapp.example.restapi.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of UserProfile snapshots, indexed by email and by id. Within a web request
+ * every lookup is additionally memoized in a request attribute, so authentication and the handler
+ * share one load even when the shared cache misses or is disabled.
+ *
+ * Each instance has its own cache and only sees its own writes, so the TTL bounds how long
+ * another instance can serve a stale profile after a change. Misses are loaded from the replica when
+ * one is configured, except for users written within the read-your-writes window. Those are re-read
+ * in a transaction of their own, so a caller's read-only transaction can't hand back its replica
+ * connection or the stale entity it already holds.
+ */
+@Component
+public class UserProfileCache {
+
+    private static final String REQUEST_ATTRIBUTE = UserProfileCache.class.getName() + ".profiles";
+
+    private final UserRepository userRepository;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate primaryReadTransaction;
+    private final Cache<String, UserProfile> byEmail;
+    private final Cache<Long, UserProfile> byId;
+
+    public UserProfileCache(UserRepository userRepository,
+                            ReadYourWrites readYourWrites,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${user.cache.max-size:10000}") long maxSize,
+                            @Value("${user.cache.ttl-seconds:30}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.readYourWrites = readYourWrites;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.primaryReadTransaction = new TransactionTemplate(transactionManager);
+        this.primaryReadTransaction.setReadOnly(true);
+        this.primaryReadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.byEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "users.byEmail");
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "users.byId");
+    }
+
+    public Optional<UserProfile> getByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return memoized("email:" + email, () -> {
+            UserProfile cached = byEmail.getIfPresent(email);
+            return cached != null ? Optional.of(cached) : load(findByEmail(email));
+        });
+    }
+
+    public Optional<UserProfile> getById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return memoized("id:" + id, () -> {
+            UserProfile cached = byId.getIfPresent(id);
+            return cached != null ? Optional.of(cached) : load(findById(id));
+        });
+    }
+
+    /**
+     * Drop every cached copy of the user. Inside a transaction the entries are dropped again after
+     * commit, so a concurrent reader cannot re-cache the old row between the write and the commit.
+     * The user's next loads also go to the primary until the replica has caught up.
+     */
+    public void invalidate(User user) {
+        invalidate(user.getId(), user.getEmail());
+    }
+
+    // For callers that only know the id; the email entry is found through the id entry or a scan
+    public void invalidateById(Long id) {
+        UserProfile cached = byId.getIfPresent(id);
+        invalidate(id, cached != null ? cached.email() : null);
+    }
+
+    public void invalidate(Long id, String email) {
+        readYourWrites.recordWrite(id, email);
+        evict(id, email);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(id, email);
+                }
+            });
+        }
+    }
+
+    private void evict(Long id, String email) {
+        if (email != null) {
+            byEmail.invalidate(email);
+        } else if (id != null) {
+            byEmail.asMap().values().removeIf(profile -> id.equals(profile.id()));
+        }
+        if (id != null) {
+            byId.invalidate(id);
+        }
+
+        Map<String, Optional<UserProfile>> requestProfiles = requestProfiles();
+        if (requestProfiles != null) {
+            requestProfiles.remove("email:" + email);
+            requestProfiles.remove("id:" + id);
+        }
+    }
+
+    // A write known only by id (e.g. a verification) is detected once the row is loaded
+    private Optional<User> findByEmail(String email) {
+        if (readYourWrites.recentlyWritten(email)) {
+            return onPrimary(() -> userRepository.findByEmail(email));
+        }
+        Optional<User> user = readTransaction.execute(status -> userRepository.findByEmail(email));
+        if (user.isPresent() && readYourWrites.recentlyWritten(user.get().getId())) {
+            return onPrimary(() -> userRepository.findByEmail(email));
+        }
+        return user;
+    }
+
+    private Optional<User> findById(Long id) {
+        if (readYourWrites.recentlyWritten(id)) {
+            return onPrimary(() -> userRepository.findById(id));
+        }
+        return readTransaction.execute(status -> userRepository.findById(id));
+    }
+
+    // A new transaction and persistence context, so the read neither joins the caller's replica
+    // connection nor gets back an entity the caller already loaded from the replica
+    private Optional<User> onPrimary(Supplier<Optional<User>> lookup) {
+        return readYourWrites.onPrimary(() -> primaryReadTransaction.execute(status -> lookup.get()));
+    }
+
+    // Misses are not cached, so a signup is visible immediately
+    private Optional<UserProfile> load(Optional<User> user) {
+        return user.map(found -> {
+            UserProfile profile = UserProfile.of(found);
+            byEmail.put(profile.email(), profile);
+            byId.put(profile.id(), profile);
+            return profile;
+        });
+    }
+
+    private Optional<UserProfile> memoized(String key, Supplier<Optional<UserProfile>> lookup) {
+        Map<String, Optional<UserProfile>> requestProfiles = requestProfiles();
+        if (requestProfiles == null) {
+            return lookup.get();
+        }
+        Optional<UserProfile> profile = requestProfiles.get(key);
+        if (profile == null) {
+            profile = lookup.get();
+            requestProfiles.put(key, profile);
+        }
+        return profile;
+    }
+
+    // Per-request memo; null outside a web request (scheduler, async callbacks)
+    @SuppressWarnings("unchecked")
+    private static Map<String, Optional<UserProfile>> requestProfiles() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object profiles = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (profiles == null) {
+            profiles = new HashMap<String, Optional<UserProfile>>();
+            attributes.setAttribute(REQUEST_ATTRIBUTE, profiles, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<String, Optional<UserProfile>>) profiles;
+    }
+}
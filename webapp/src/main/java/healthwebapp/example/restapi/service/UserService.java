@@ -1,109 +1,387 @@
 package healthwebapp.example.restapi.service;
 
+import healthwebapp.example.restapi.dto.ProfilePictureVariant;
 import healthwebapp.example.restapi.dto.UserDTO;
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import healthwebapp.example.restapi.entity.OutboxMessage;
 import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.OutboxMessageRepository;
 import healthwebapp.example.restapi.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.http.ETag;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+// Writes run in read-write transactions on the primary; findProfileByEmail is the only read-only
+// method and may be served by the replica (UserProfileCache opens its own transactions)
 @Service
-@Transactional
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     private final CustomS3Service s3Service;
 
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashingService passwordHashingService;
+
+    @Autowired
+    private CredentialCache credentialCache;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private VerificationMessageEncoder messageEncoder;
+
+    @Autowired
+    private VerificationTokenService verificationTokenService;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PictureUrlSigner pictureUrlSigner;
+
+    @Autowired
+    private EmailExistenceFilter emailExistenceFilter;
 
     @Autowired
     public UserService(CustomS3Service s3Service) {
         this.s3Service = s3Service;
     }
 
-    // Method to find user by email (for authentication or user retrieval)
+    // Method to find user by email (for authentication or user retrieval); reads the primary,
+    // since callers go on to modify or check the row
+    @Transactional
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
+    // Duplicate-email pre-check for signups; emails the filter has never seen skip the query. Not final:
+    // the unique constraint on the INSERT in createUser has the last word.
+    @Transactional
+    public boolean isEmailInUse(String email) {
+        if (!emailExistenceFilter.mightExist(email)) {
+            return false;
+        }
+        boolean inUse = userRepository.existsByEmail(email);
+        if (!inUse) {
+            emailExistenceFilter.recordFalsePositive();
+        }
+        return inUse;
+    }
+
+    // Read-only lookup served from the profile cache; use findByEmail when the user will be modified.
+    // Not transactional: a recently written user must be re-read outside any replica transaction.
+    public Optional<UserProfile> findProfileByEmail(String email) {
+        return userProfileCache.getByEmail(email);
+    }
+
     // Method to create a new user (handling registration)
+    @Transactional
     public User createUser(User user) {
-        user.setAccountCreated(LocalDateTime.now());
-        user.setAccountUpdated(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        user.setAccountCreated(now);
+        user.setAccountUpdated(now);
+
+        // Throws DataIntegrityViolationException when the email is taken
+        User savedUser = userRepository.save(user);
+        emailExistenceFilter.added(savedUser.getEmail());
+
+        // Store the token hash and queue the verification message in the same transaction as the user row
+        VerificationTokenService.IssuedToken token = verificationTokenService.issue(savedUser.getId(), now);
+        outboxRepository.save(verificationMessage(savedUser.getId(), savedUser.getEmail(), token, now));
+        // The first authenticated request usually follows right away; don't let the replica answer 401
+        readYourWrites.recordWrite(savedUser.getId(), savedUser.getEmail());
 
-        return userRepository.save(user);
+        return savedUser;
     }
 
-    // Method to update an existing user
-    public User updateUser(User user) {
-        user.setAccountUpdated(LocalDateTime.now());
-        return userRepository.save(user);
+    // The verification message for a new user, queued in the transaction that inserts it (also ReactiveUserService)
+    OutboxMessage verificationMessage(Long userId, String email, VerificationTokenService.IssuedToken token,
+                                      LocalDateTime now) {
+        UserVerificationPayload payload = new UserVerificationPayload(userId, email, token.token(), token.expiresAt());
+        return OutboxMessage.pending(messageEncoder.encode(payload), messageEncoder.getContentType(), now);
     }
 
-    // Method to update user password
-    public User updatePassword(User user, String newPassword) {
-        user.setPassword(encodePassword(newPassword));
-        user.setAccountUpdated(LocalDateTime.now());
-        return userRepository.save(user);
+    // Update names and/or password in one statement; null values keep the stored ones. The password
+    // arrives already hashed (see encodePassword), so no BCrypt work runs inside the transaction.
+    // Returns the profile as written, or empty when the user no longer exists.
+    @Transactional
+    public Optional<UserProfile> updateProfile(UserProfile user, String firstName, String lastName, String encodedPassword) {
+        return updateProfile(user, OptionalLong.empty(), firstName, lastName, encodedPassword);
     }
 
-    // Method to hash password
-    public String encodePassword(String password) {
-        return passwordEncoder.encode(password);
+    // As above, but with a version only while the row is still at it (If-Match); empty otherwise.
+    // The returned version is exact only then, since other writes may have raced an unconditional update.
+    @Transactional
+    public Optional<UserProfile> updateProfile(UserProfile user, OptionalLong version, String firstName, String lastName,
+                                               String encodedPassword) {
+        LocalDateTime now = LocalDateTime.now();
+
+        int updated = version.isPresent()
+                ? userRepository.updateProfileAtVersion(user.id(), version.getAsLong(), firstName, lastName, encodedPassword, now)
+                : userRepository.updateProfile(user.id(), firstName, lastName, encodedPassword, now);
+        if (updated == 0) {
+            return Optional.empty();
+        }
+        if (encodedPassword != null) {
+            credentialCache.invalidate(user.email());
+        }
+        userProfileCache.invalidate(user.id(), user.email());
+
+        return Optional.of(updatedProfile(user, version.orElse(user.version()), firstName, lastName, encodedPassword, now));
+    }
+
+    // The profile as updateProfile wrote it over the row at updatedVersion (also ReactiveUserService)
+    static UserProfile updatedProfile(UserProfile user, long updatedVersion, String firstName, String lastName,
+                                      String encodedPassword, LocalDateTime now) {
+        return new UserProfile(
+                user.id(),
+                user.email(),
+                encodedPassword != null ? encodedPassword : user.password(),
+                firstName != null ? firstName : user.firstName(),
+                lastName != null ? lastName : user.lastName(),
+                user.verified(),
+                user.accountCreated(),
+                now,
+                user.profilePicUrl(),
+                user.profilePicUploadDate(),
+                user.pfpKey(),
+                user.pfpVariants(),
+                updatedVersion + 1,
+                encodedPassword != null ? now : user.passwordUpdated()
+        );
+    }
+
+    // Hashes a password on the bounded hashing pool; fails with RejectedExecutionException when it is saturated
+    public CompletableFuture<String> encodePassword(String password) {
+        return passwordHashingService.encode(password);
     }
 
     // Convert User entity to UserDTO for API responses
     public UserDTO convertToDTO(User user) {
-        return new UserDTO(
-                user.getId(),
-                user.getEmail(),
-                user.getFirstName(),
-                user.getLastName(),
-                user.getAccountCreated(),
-                user.getAccountUpdated(),
-                user.getProfilePicUrl(), // Assuming 'profilePicUrl' in User maps to 'file_name' in UserDTO
-                user.getProfilePicUrl(), // Assuming 'profilePicUrl' also represents 'url'
-                user.getProfilePicUploadDate(), // Mapping upload date
-                user.getId().toString() // Converting Long ID to String for 'user_id'
+        return convertToDTO(UserProfile.of(user));
+    }
+
+    public UserDTO convertToDTO(UserProfile user) {
+        // The bucket is private, so the picture and its variants are returned as pre-signed GET URLs
+        PictureUrlSigner.SignedUrls urls = signedUrls(user);
+        UserDTO userDTO = new UserDTO(
+                user.id(),
+                user.email(),
+                user.firstName(),
+                user.lastName(),
+                user.accountCreated(),
+                user.accountUpdated(),
+                user.profilePicUrl(), // Assuming 'profilePicUrl' in User maps to 'file_name' in UserDTO
+                urls != null ? urls.url() : user.profilePicUrl(),
+                user.profilePicUploadDate(), // Mapping upload date
+                user.id().toString() // Converting Long ID to String for 'user_id'
         );
+        if (urls != null) {
+            List<String> names = variantNames(user.pfpVariants());
+            List<ProfilePictureVariant> variants = new ArrayList<>(names.size());
+            for (int i = 0; i < names.size(); i++) {
+                String variant = names.get(i);
+                variants.add(new ProfilePictureVariant(variantSize(variant), variantContentType(variant), urls.variantUrls().get(i)));
+            }
+            userDTO.setVariants(variants);
+        }
+        return userDTO;
+    }
+
+    /**
+     * Strong ETag for convertToDTO(user): the row version, plus the expiry of the picture URLs,
+     * since re-signing them changes the body without a write. Computed without building the DTO.
+     */
+    public String etag(UserProfile user) {
+        PictureUrlSigner.SignedUrls urls = signedUrls(user);
+        String tag = user.id() + "-" + user.version();
+        return "\"" + (urls == null ? tag : tag + "-" + urls.expiresAt().getEpochSecond()) + "\"";
     }
 
-    // Upload profile picture and update the User entity
-    public void uploadProfilePicture(MultipartFile file, User user) throws IOException {
-        UUID userIdAsUUID = UUID.nameUUIDFromBytes(user.getId().toString().getBytes());
-        // Upload to S3 and get the file key
-        String key = s3Service.uploadFile(file, userIdAsUUID);
+    // The row version an If-Match ETag from etag() stands for; empty when it is not one of this user's
+    public static OptionalLong versionOf(ETag etag, UserProfile user) {
+        String[] parts = etag.tag().split("-");
+        if (etag.weak() || parts.length < 2 || !parts[0].equals(String.valueOf(user.id()))) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(parts[1]));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    // How long a response for the user may be cached: until its picture URLs get close to expiring
+    public Optional<Duration> cacheableFor(UserProfile user) {
+        return Optional.ofNullable(signedUrls(user))
+                .map(urls -> pictureUrlSigner.freshFor(urls.expiresAt(), Instant.now()));
+    }
+
+    private PictureUrlSigner.SignedUrls signedUrls(UserProfile user) {
+        if (user.pfpKey() == null) {
+            return null;
+        }
+        List<String> variantKeys = variantNames(user.pfpVariants()).stream()
+                .map(variant -> CustomS3Service.variantKey(user.pfpKey(), variant))
+                .toList();
+        return pictureUrlSigner.sign(user.pfpKey(), variantKeys);
+    }
+
+    static List<String> variantNames(String variants) {
+        return variants == null || variants.isEmpty() ? List.of() : List.of(variants.split(","));
+    }
 
-        user.setPfpKey(key);
+    // Variant names are {size}.{extension}, e.g. 256.jpg
+    private static int variantSize(String variant) {
+        return Integer.parseInt(variant.substring(0, variant.indexOf('.')));
+    }
+
+    private static String variantContentType(String variant) {
+        return switch (variant.substring(variant.indexOf('.') + 1)) {
+            case "png" -> "image/png";
+            case "webp" -> "image/webp";
+            default -> "image/jpeg";
+        };
+    }
+
+    String s3Url(String key) {
+        return String.format("https://%s.s3.amazonaws.com/%s", s3Service.getBucketName(), key);
+    }
 
-        // Set the S3 URL
-        String fileUrl = String.format("https://%s.s3.amazonaws.com/%s", s3Service.getBucketName(), key);
-        user.setProfilePicUrl(fileUrl);
-        user.setProfilePicUploadDate(LocalDateTime.now());
+    // Upload profile picture and record it on the user once S3 has stored it
+    public CompletableFuture<UserProfile> uploadProfilePicture(InputStream content, UserProfile user) throws IOException {
+        // Stream the image to S3; the key and its variants arrive when the upload completes
+        return s3Service.uploadFile(content, pictureOwner(user))
+                .thenCompose(stored -> recordProfilePicture(stored, user));
+    }
+
+    // Direct upload, step one: a URL the client PUTs the picture to, under the user's prefix
+    public CustomS3Service.PresignedUpload presignProfilePicture(String contentType, long contentLength, UserProfile user) {
+        return s3Service.presignUpload(contentType, contentLength, pictureOwner(user));
+    }
+
+    // Direct upload, step two: validate and process what arrived at the key, then record it on the user
+    public CompletableFuture<UserProfile> confirmProfilePicture(String key, UserProfile user) {
+        return s3Service.confirmUpload(key, pictureOwner(user))
+                .thenCompose(stored -> recordProfilePicture(stored, user));
+    }
 
-        userRepository.save(user);
+    // The S3 prefix of a user's pictures is users/{uuid}/ with a UUID derived from the id
+    static UUID pictureOwner(UserProfile user) {
+        return UUID.nameUUIDFromBytes(user.id().toString().getBytes());
+    }
+
+    // A stored picture as it is recorded on the user
+    record NewPicture(String key, String variants, String url, LocalDateTime recordedAt) {
+
+        // The user once this picture replaced the one on the row at replacedVersion
+        UserProfile appliedTo(UserProfile user, long replacedVersion) {
+            return new UserProfile(
+                    user.id(),
+                    user.email(),
+                    user.password(),
+                    user.firstName(),
+                    user.lastName(),
+                    user.verified(),
+                    user.accountCreated(),
+                    recordedAt,
+                    url,
+                    recordedAt,
+                    key,
+                    variants,
+                    replacedVersion + 1,
+                    user.passwordUpdated()
+            );
+        }
+    }
+
+    NewPicture newPicture(CustomS3Service.StoredImage stored) {
+        String variants = stored.variants().isEmpty() ? null : String.join(",", stored.variants());
+        return new NewPicture(stored.key(), variants, s3Url(stored.key()), LocalDateTime.now());
+    }
+
+    // Records the stored picture in place of the user's current one, then deletes the one it replaced
+    private CompletableFuture<UserProfile> recordProfilePicture(CustomS3Service.StoredImage stored, UserProfile user) {
+        NewPicture picture = newPicture(stored);
+
+        // The snapshot can be behind the row (another instance's cache, a concurrent upload); when the
+        // update misses, re-read the row on the primary and replace the picture that is really there
+        String previousKey = user.pfpKey();
+        String previousVariants = user.pfpVariants();
+        long version = user.version();
+        while (userRepository.replaceProfilePicture(user.id(), previousKey, picture.key(), picture.variants(),
+                picture.url(), picture.recordedAt()) == 0) {
+            Optional<User> current = readYourWrites.onPrimary(() -> userRepository.findById(user.id()));
+            if (current.isEmpty()) {
+                return discardPicture(stored, user.id());
+            }
+            previousKey = current.get().getPfpKey();
+            previousVariants = current.get().getPfpVariants();
+            version = current.get().getVersion();
+        }
+        userProfileCache.invalidate(user.id(), user.email());
+
+        UserProfile updated = picture.appliedTo(user, version);
+        return deleteReplacedPicture(user.id(), previousKey, previousVariants).thenApply(ignored -> updated);
+    }
+
+    // The account was deleted while the upload was in flight; don't leave the objects behind, and fail the upload
+    <T> CompletableFuture<T> discardPicture(CustomS3Service.StoredImage stored, Long userId) {
+        return s3Service.deleteImage(stored.key(), stored.variants()).thenApply(ignored -> {
+            throw new IllegalStateException("User " + userId + " no longer exists");
+        });
+    }
+
+    // Deletes a picture that has just been replaced, with its variants. The new one is already recorded,
+    // so a failure only orphans the old objects; it is logged and the upload still succeeds.
+    CompletableFuture<Void> deleteReplacedPicture(Long userId, String key, String variants) {
+        if (key == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return s3Service.deleteImage(key, variantNames(variants)).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("Could not delete replaced profile picture {} of user {}: {}", key, userId, cause.getMessage());
+            return null;
+        });
     }
 
     // Delete profile picture
-    public void deleteProfilePicture(User user) {
-        if (user.getProfilePicUrl() != null) {
-            // Delete the profile picture from S3
-            s3Service.deleteFile(user.getPfpKey());
-
-            user.setProfilePicUrl(null);
-            user.setProfilePicUploadDate(null);
-            userRepository.save(user);
+    public CompletableFuture<Void> deleteProfilePicture(User user) {
+        if (user.getProfilePicUrl() == null) {
+            return CompletableFuture.completedFuture(null);
         }
+
+        // Delete the profile picture and its variants from S3, then clear it on the user unless a new one replaced it
+        String key = user.getPfpKey();
+        return s3Service.deleteImage(key, variantNames(user.getPfpVariants())).thenRun(() -> {
+            userRepository.clearProfilePicture(user.getId(), key, LocalDateTime.now());
+            userProfileCache.invalidate(user);
+        });
     }
 
     // Convert UserDTO to User entity for request processing
@@ -115,16 +393,27 @@ public class UserService {
         return user;
     }
 
-    public Optional<User> findByVerificationToken(String token) {
-        return userRepository.findByVerificationToken(token);
+    // Redeem a verification link
+    public VerificationTokenService.Outcome verifyEmail(String token) {
+        return verificationTokenService.verify(token);
     }
 
-    // Method to delete a user
+    // Method to delete a user; the user and its tokens go in one transaction. The picture objects are
+    // deleted afterwards with deleteProfilePictureObjects, so an S3 failure can only orphan objects.
+    @Transactional
     public void deleteUser(User user) {
-        // If the user has a profile picture, delete it from S3
-        deleteProfilePicture(user);
+        verificationTokenService.deleteForUser(user.getId());
+        userRepository.deleteUserById(user.getId());
+        emailExistenceFilter.removed();
+        credentialCache.invalidate(user.getEmail());
+        userProfileCache.invalidate(user);
+    }
 
-        // Remove the user record from the database
-        userRepository.delete(user);
+    // Deletes a removed user's picture and its variants from S3; the row is already gone, so nothing is cleared
+    public CompletableFuture<Void> deleteProfilePictureObjects(User user) {
+        if (user.getPfpKey() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return s3Service.deleteImage(user.getPfpKey(), variantNames(user.getPfpVariants()));
     }
 }
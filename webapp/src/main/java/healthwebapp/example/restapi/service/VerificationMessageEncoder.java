@@ -0,0 +1,82 @@
+package healthwebapp.example.restapi.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+
+/**
+ * Encodes UserVerificationPayload for the verification outbox. Writers are built once and
+ * shared; their factories draw output buffers from a shared lock-free recycler pool, so
+ * encoding a payload reuses byte buffers across threads (virtual ones included) instead of
+ * allocating fresh ones per signup.
+ *
+ * The default wire format is JSON. With outbox.message-format=cbor the payload is CBOR,
+ * base64-encoded because SNS message bodies are text. The dispatcher tags every message with the
+ * contentType message attribute so EmailVerificationLambda knows how to decode it.
+ */
+@Component
+public class VerificationMessageEncoder {
+
+    // SNS message attribute that carries the payload content type
+    public static final String CONTENT_TYPE_ATTRIBUTE = "contentType";
+
+    public static final String JSON = "application/json";
+    public static final String CBOR = "application/cbor";
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter cborWriter;
+    private final String contentType;
+
+    public VerificationMessageEncoder(@Value("${outbox.message-format:json}") String format) {
+        this.contentType = switch (format.toLowerCase()) {
+            case "json" -> JSON;
+            case "cbor" -> CBOR;
+            default -> throw new IllegalStateException("Unsupported outbox.message-format: " + format);
+        };
+
+        ObjectMapper jsonMapper = JsonMapper.builder(JsonFactory.builder()
+                        .recyclerPool(JsonRecyclerPools.sharedLockFreePool())
+                        .build())
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        ObjectMapper cborMapper = CBORMapper.builder(CBORFactory.builder()
+                        .recyclerPool(JsonRecyclerPools.sharedLockFreePool())
+                        .build())
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        this.jsonWriter = jsonMapper.writerFor(UserVerificationPayload.class);
+        this.cborWriter = cborMapper.writerFor(UserVerificationPayload.class);
+    }
+
+    // Content type of the bodies produced by encode()
+    public String getContentType() {
+        return contentType;
+    }
+
+    // Encode the payload into the text body stored in the outbox and published to SNS
+    public String encode(UserVerificationPayload payload) {
+        try {
+            if (CBOR.equals(contentType)) {
+                return Base64.getEncoder().encodeToString(cborWriter.writeValueAsBytes(payload));
+            }
+            return jsonWriter.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize verification payload", e);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.OutboxMessage.DeliveryStatus;
+import healthwebapp.example.restapi.repository.OutboxMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the verification outbox into SNS using PublishBatch. Each batch is claimed and
+ * updated in its own transaction; failed entries are retried with exponential backoff
+ * until outbox.max-attempts is reached, after which they are marked FAILED. The dispatcher
+ * runs on the scheduler thread, so it waits for each PublishBatch call while holding its row locks,
+ * at most outbox.publish-timeout-ms; a call that takes longer is retried like a failed one.
+ * SENT and FAILED rows drop their payload, which holds the raw verification token, and are purged
+ * once the token they carried has expired.
+ */
+@Component
+public class VerificationOutboxDispatcher {
+
+    // SNS PublishBatch accepts at most 10 entries per call
+    static final int MAX_BATCH_SIZE = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationOutboxDispatcher.class);
+
+    private final SnsAsyncClient snsClient;
+    private final OutboxMessageRepository outboxRepository;
+    private final AtomicLong depth = new AtomicLong();
+    private final Timer publishLag;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final TransactionTemplate transactionTemplate;
+    private final String topicArn;
+    private final int maxAttempts;
+    private final int maxBatchesPerRun;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long publishTimeoutMs;
+    private final Duration retention;
+    private final int purgeBatchSize;
+
+    public VerificationOutboxDispatcher(SnsAsyncClient snsClient,
+                                        OutboxMessageRepository outboxRepository,
+                                        MeterRegistry meterRegistry,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${aws.sns.topic.arn:}") String topicArn,
+                                        @Value("${outbox.max-attempts:8}") int maxAttempts,
+                                        @Value("${outbox.max-batches-per-run:20}") int maxBatchesPerRun,
+                                        @Value("${outbox.backoff.initial-ms:1000}") long initialBackoffMs,
+                                        @Value("${outbox.backoff.max-ms:300000}") long maxBackoffMs,
+                                        @Value("${outbox.publish-timeout-ms:10000}") long publishTimeoutMs,
+                                        @Value("${verification.token.ttl-minutes:10}") long tokenTtlMinutes,
+                                        @Value("${outbox.purge-batch-size:1000}") int purgeBatchSize) {
+        this.snsClient = snsClient;
+        this.outboxRepository = outboxRepository;
+        meterRegistry.gauge("outbox.verification.depth", depth);
+        this.publishLag = Timer.builder("outbox.verification.publish.lag")
+                .description("Time from signup until SNS accepted the verification message")
+                .register(meterRegistry);
+        this.sent = meterRegistry.counter("outbox.verification.publish", "result", "sent");
+        this.retried = meterRegistry.counter("outbox.verification.publish", "result", "retry");
+        this.failed = meterRegistry.counter("outbox.verification.publish", "result", "failed");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.topicArn = topicArn;
+        this.maxAttempts = maxAttempts;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.publishTimeoutMs = publishTimeoutMs;
+        this.retention = Duration.ofMinutes(tokenTtlMinutes);
+        this.purgeBatchSize = purgeBatchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        depth.set(outboxRepository.countByStatus(DeliveryStatus.PENDING));
+
+        if (topicArn == null || topicArn.isBlank()) {
+            return;
+        }
+
+        // Keep draining while full batches come back, bounded so one run can't starve the scheduler
+        for (int batches = 0; batches < maxBatchesPerRun; batches++) {
+            Integer published = transactionTemplate.execute(status -> publishNextBatch());
+            if (published == null || published < MAX_BATCH_SIZE) {
+                break;
+            }
+        }
+    }
+
+    // Claim up to MAX_BATCH_SIZE due messages, publish them and record the outcome per row
+    int publishNextBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> batch = outboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                DeliveryStatus.PENDING, now, PageRequest.of(0, MAX_BATCH_SIZE));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            PublishBatchRequestEntry.Builder entry = PublishBatchRequestEntry.builder()
+                    .id(message.getId().toString())
+                    .message(message.getPayload());
+            if (message.getContentType() != null) {
+                entry.messageAttributes(Map.of(VerificationMessageEncoder.CONTENT_TYPE_ATTRIBUTE,
+                        MessageAttributeValue.builder()
+                                .dataType("String")
+                                .stringValue(message.getContentType())
+                                .build()));
+            }
+            entries.add(entry.build());
+        }
+
+        Map<String, OutboxMessage> byEntryId = batch.stream()
+                .collect(Collectors.toMap(message -> message.getId().toString(), Function.identity()));
+
+        try {
+            PublishBatchResponse result = publish(entries);
+
+            for (PublishBatchResultEntry success : result.successful()) {
+                markSent(byEntryId.remove(success.id()), success.messageId());
+            }
+            for (BatchResultErrorEntry failure : result.failed()) {
+                markForRetry(byEntryId.remove(failure.id()), failure.code() + ": " + failure.message());
+            }
+            // Entries SNS did not report on are retried as well
+            for (OutboxMessage message : byEntryId.values()) {
+                markForRetry(message, "No result returned for batch entry");
+            }
+        } catch (ExecutionException | SdkException e) {
+            Throwable cause = (e instanceof ExecutionException && e.getCause() != null) ? e.getCause() : e;
+            retryBatch(batch, cause.getMessage());
+        } catch (TimeoutException e) {
+            // SNS may still accept the batch; a retry then sends a second, equally valid verification email
+            retryBatch(batch, "PublishBatch timed out after " + publishTimeoutMs + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retryBatch(batch, "Interrupted while waiting for PublishBatch");
+        }
+
+        outboxRepository.saveAll(batch);
+        return batch.size();
+    }
+
+    // Waits at most publishTimeoutMs, since the batch's row locks are held until this returns
+    private PublishBatchResponse publish(List<PublishBatchRequestEntry> entries)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        CompletableFuture<PublishBatchResponse> call = snsClient.publishBatch(PublishBatchRequest.builder()
+                .topicArn(topicArn)
+                .publishBatchRequestEntries(entries)
+                .build());
+        try {
+            return call.get(publishTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            call.cancel(true);
+            throw e;
+        }
+    }
+
+    private void retryBatch(List<OutboxMessage> batch, String error) {
+        logger.warn("SNS PublishBatch failed for {} outbox messages: {}", batch.size(), error);
+        for (OutboxMessage message : batch) {
+            markForRetry(message, error);
+        }
+    }
+
+    private void markSent(OutboxMessage message, String messageId) {
+        if (message == null) {
+            return;
+        }
+        LocalDateTime sentAt = LocalDateTime.now();
+        message.setStatus(DeliveryStatus.SENT);
+        message.setAttempts(message.getAttempts() + 1);
+        message.setSentAt(sentAt);
+        message.setMessageId(messageId);
+        message.setLastError(null);
+        // The payload carries the raw verification token; once SNS has it the row is only a delivery record
+        message.setPayload("");
+
+        publishLag.record(Duration.between(message.getCreatedAt(), sentAt));
+        sent.increment();
+    }
+
+    private void markForRetry(OutboxMessage message, String error) {
+        if (message == null) {
+            return;
+        }
+        int attempts = message.getAttempts() + 1;
+        message.setAttempts(attempts);
+        message.setLastError(truncate(error));
+
+        if (attempts >= maxAttempts) {
+            logger.error("Giving up on outbox message {} after {} attempts: {}", message.getId(), attempts, error);
+            message.setStatus(DeliveryStatus.FAILED);
+            // Nothing publishes it any more, so it need not keep the token either
+            message.setPayload("");
+            failed.increment();
+            return;
+        }
+
+        message.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMillis(attempts))));
+        retried.increment();
+    }
+
+    // Delete SENT and FAILED rows older than the token TTL, oldest first, one short transaction per batch
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:600000}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        long purged = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> finished = outboxRepository.findFinishedIdsCreatedBefore(cutoff, DeliveryStatus.PENDING,
+                        PageRequest.of(0, purgeBatchSize));
+                if (!finished.isEmpty()) {
+                    outboxRepository.deleteAllByIdInBatch(finished);
+                }
+                return finished.size();
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            purged += deleted;
+            if (deleted < purgeBatchSize) {
+                break;
+            }
+        }
+        if (purged > 0) {
+            logger.info("Purged {} delivered or abandoned outbox messages", purged);
+        }
+    }
+
+    // initial * 2^(attempts - 1), capped at the configured maximum
+    long backoffMillis(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(initialBackoffMs << shift, maxBackoffMs);
+    }
+
+    private static String truncate(String error) {
+        if (error == null || error.length() <= 1000) {
+            return error;
+        }
+        return error.substring(0, 1000);
+    }
+}
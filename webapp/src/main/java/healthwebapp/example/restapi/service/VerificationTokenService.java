@@ -0,0 +1,149 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.entity.VerificationToken;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.repository.VerificationTokenRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Issues and redeems email verification tokens. The link carries a random UUID; the table only
+ * keeps its SHA-256 digest, so verification is one probe of the unique token_hash index followed
+ * by a conditional update of the user by primary key, independent of how many users exist.
+ */
+@Service
+public class VerificationTokenService {
+
+    public enum Outcome {
+        VERIFIED,
+        INVALID,
+        EXPIRED
+    }
+
+    // Raw token for the verification link and when it stops working
+    public record IssuedToken(String token, LocalDateTime expiresAt) {
+    }
+
+    // A token and the row that stores its hash, for callers that write the rows in bulk
+    public record NewToken(IssuedToken issued, VerificationToken row) {
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(VerificationTokenService.class);
+
+    private final VerificationTokenRepository tokenRepository;
+    private final UserRepository userRepository;
+    private final UserProfileCache userProfileCache;
+    private final TransactionTemplate transactionTemplate;
+    private final long ttlMinutes;
+    private final int sweepBatchSize;
+
+    public VerificationTokenService(VerificationTokenRepository tokenRepository,
+                                    UserRepository userRepository,
+                                    UserProfileCache userProfileCache,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${verification.token.ttl-minutes:10}") long ttlMinutes,
+                                    @Value("${verification.sweep-batch-size:1000}") int sweepBatchSize) {
+        this.tokenRepository = tokenRepository;
+        this.userRepository = userRepository;
+        this.userProfileCache = userProfileCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttlMinutes = ttlMinutes;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    // Store a fresh token for the user; joins the caller's transaction so it commits with the user row
+    @Transactional
+    public IssuedToken issue(Long userId, LocalDateTime now) {
+        NewToken token = newToken(userId, now);
+        tokenRepository.save(token.row());
+        return token.issued();
+    }
+
+    // Generate a token without storing it
+    public NewToken newToken(Long userId, LocalDateTime now) {
+        String token = UUID.randomUUID().toString();
+        LocalDateTime expiresAt = now.plusMinutes(ttlMinutes);
+        return new NewToken(new IssuedToken(token, expiresAt), new VerificationToken(hash(token), userId, expiresAt));
+    }
+
+    @Transactional
+    public Outcome verify(String token) {
+        Optional<VerificationToken> found = tokenRepository.findByTokenHash(hash(token));
+        if (found.isEmpty()) {
+            return Outcome.INVALID;
+        }
+
+        VerificationToken verificationToken = found.get();
+        LocalDateTime now = LocalDateTime.now();
+        // Expired tokens stay until the sweeper runs, so the link keeps answering "expired" until then
+        if (now.isAfter(verificationToken.getExpiresAt())) {
+            return Outcome.EXPIRED;
+        }
+
+        // Tokens are single use; the delete also settles a race between two clicks on the same link
+        if (tokenRepository.deleteTokenById(verificationToken.getId()) == 0) {
+            return Outcome.INVALID;
+        }
+        if (userRepository.markVerified(verificationToken.getUserId(), now) == 0) {
+            logger.warn("Verification token {} pointed at a missing or already verified user {}",
+                    verificationToken.getId(), verificationToken.getUserId());
+            return Outcome.INVALID;
+        }
+        userProfileCache.invalidateById(verificationToken.getUserId());
+        return Outcome.VERIFIED;
+    }
+
+    @Transactional
+    public void deleteForUser(Long userId) {
+        tokenRepository.deleteByUserId(userId);
+    }
+
+    // Delete expired tokens oldest first, one short transaction per batch
+    @Scheduled(fixedDelayString = "${verification.sweep-interval-ms:600000}")
+    public void sweepExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        long swept = 0;
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> expired = tokenRepository.findExpiredIds(now, PageRequest.of(0, sweepBatchSize));
+                if (!expired.isEmpty()) {
+                    tokenRepository.deleteAllByIdInBatch(expired);
+                }
+                return expired.size();
+            });
+            if (deleted == null || deleted == 0) {
+                break;
+            }
+            swept += deleted;
+            if (deleted < sweepBatchSize) {
+                break;
+            }
+        }
+        if (swept > 0) {
+            logger.info("Removed {} expired verification tokens", swept);
+        }
+    }
+
+    static byte[] hash(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+-- Tables as ddl-auto=update left them. IF NOT EXISTS lets this run on databases that were
+-- created by Hibernate before Flyway took over (baselined at version 0).
+
+CREATE TABLE IF NOT EXISTS users (
+    id                      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email                   VARCHAR(255) NOT NULL,
+    password                VARCHAR(255) NOT NULL,
+    first_name              VARCHAR(255) NOT NULL,
+    last_name               VARCHAR(255) NOT NULL,
+    pfp_key                 VARCHAR(255),
+    is_verified             BOOLEAN NOT NULL DEFAULT FALSE,
+    account_created         TIMESTAMP(6),
+    account_updated         TIMESTAMP(6),
+    profile_pic_url         VARCHAR(255),
+    profile_pic_upload_date TIMESTAMP(6),
+    CONSTRAINT ux_users_email UNIQUE (email)
+);
+
+CREATE TABLE IF NOT EXISTS verification_outbox (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    payload         TEXT NOT NULL,
+    status          VARCHAR(16) NOT NULL,
+    attempts        INTEGER NOT NULL,
+    next_attempt_at TIMESTAMP(6) NOT NULL,
+    created_at      TIMESTAMP(6) NOT NULL,
+    sent_at         TIMESTAMP(6),
+    message_id      VARCHAR(255),
+    last_error      VARCHAR(1000)
+);
+
+ALTER TABLE verification_outbox ADD COLUMN IF NOT EXISTS content_type VARCHAR(64);
+
+CREATE TABLE IF NOT EXISTS verification_tokens (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    token_hash BYTEA NOT NULL,
+    user_id    BIGINT NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
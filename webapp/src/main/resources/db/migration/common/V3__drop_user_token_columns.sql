@@ -0,0 +1,3 @@
+-- Verification tokens moved to verification_tokens; only Hibernate-created databases have these
+ALTER TABLE users DROP COLUMN IF EXISTS verification_token;
+ALTER TABLE users DROP COLUMN IF EXISTS token_expiration_time;
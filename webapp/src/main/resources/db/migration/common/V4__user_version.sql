@@ -0,0 +1,2 @@
+-- Optimistic locking for users (@Version); existing rows start at 0
+ALTER TABLE users ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+-- Resized variants stored next to the profile picture, as comma-separated names (e.g. 256.jpg)
+ALTER TABLE users ADD COLUMN IF NOT EXISTS pfp_variants VARCHAR(255);
@@ -0,0 +1,2 @@
+-- When the password was last changed by its user (not by a rehash); NULL for passwords never changed
+ALTER TABLE users ADD COLUMN IF NOT EXISTS password_updated TIMESTAMP;
@@ -0,0 +1,2 @@
+-- SENT messages no longer keep their payload, which holds the raw verification token
+UPDATE verification_outbox SET payload = '' WHERE status = 'SENT';
@@ -0,0 +1,2 @@
+-- FAILED messages are never published again, so they drop the raw verification token as SENT ones do
+UPDATE verification_outbox SET payload = '' WHERE status = 'FAILED';
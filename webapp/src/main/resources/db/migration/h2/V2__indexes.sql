@@ -0,0 +1,13 @@
+-- H2 counterpart of postgresql/V2__indexes.sql (no CONCURRENTLY, no partial indexes)
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_verification_tokens_hash
+    ON verification_tokens (token_hash);
+
+CREATE INDEX IF NOT EXISTS ix_verification_tokens_expires_at
+    ON verification_tokens (expires_at);
+
+CREATE INDEX IF NOT EXISTS ix_verification_tokens_user_id
+    ON verification_tokens (user_id);
+
+CREATE INDEX IF NOT EXISTS ix_verification_outbox_pending
+    ON verification_outbox (status, next_attempt_at, id);
@@ -0,0 +1,4 @@
+-- H2 counterpart of postgresql/V9__outbox_purge_index.sql (no CONCURRENTLY, no partial indexes)
+
+CREATE INDEX IF NOT EXISTS ix_verification_outbox_finished
+    ON verification_outbox (created_at);
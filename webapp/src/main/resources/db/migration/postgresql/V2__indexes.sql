@@ -0,0 +1,21 @@
+-- Built CONCURRENTLY so the migration does not block writes on a live table; Flyway runs
+-- these statements outside a transaction. CONCURRENTLY waits for every open transaction, so
+-- this relies on spring.flyway.postgresql.transactional-lock=false: Flyway's default advisory
+-- lock is held in a transaction of its own and the build would wait on it forever.
+-- A failed build leaves an INVALID index behind that IF NOT EXISTS would skip, so drop it
+-- before retrying.
+-- The unique email constraint from V1 already backs findByEmail and deleteByEmail.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ux_verification_tokens_hash
+    ON verification_tokens (token_hash);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_verification_tokens_expires_at
+    ON verification_tokens (expires_at);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_verification_tokens_user_id
+    ON verification_tokens (user_id);
+
+-- Dispatcher poll: only PENDING rows, in next_attempt_at order; SENT rows never enter the index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_verification_outbox_pending
+    ON verification_outbox (next_attempt_at, id)
+    WHERE status = 'PENDING';
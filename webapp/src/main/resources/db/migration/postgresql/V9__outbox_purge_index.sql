@@ -0,0 +1,6 @@
+-- Built CONCURRENTLY for the same reasons as V2__indexes.sql; see the notes there
+
+-- Purge of delivered and abandoned messages in created_at order; PENDING rows never enter the index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ix_verification_outbox_finished
+    ON verification_outbox (created_at)
+    WHERE status <> 'PENDING';
@@ -0,0 +1,43 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+// The same contract against the reactive profile: WebFlux on Reactor Netty, with R2DBC on the test database
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000",
+                "spring.main.web-application-type=reactive",
+                "spring.r2dbc.url=r2dbc:h2:mem:///testdb?options=MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1"})
+@ActiveProfiles({"test", "reactive"})
+class ReactiveUserApiContractTest extends UserApiContract {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Override
+    protected String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    @Override
+    protected void createVerifiedUser(String email, String password) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+    }
+}
@@ -0,0 +1,100 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.service.CredentialCache;
+import healthwebapp.example.restapi.service.PasswordHashingService;
+import healthwebapp.example.restapi.service.ReactiveUserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Basic auth for the reactive profile, doing what CachingAuthenticationProvider does on the servlet
+ * stack: the CredentialCache first, then a full BCrypt check on the PasswordHashingService pool, and
+ * a background upgrade of outdated hashes. The loaded profile is kept as the authentication details,
+ * so handlers don't query the user again.
+ */
+public class CachingReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private static final List<GrantedAuthority> ADMIN_AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_ADMIN"));
+
+    private final ReactiveUserService userService;
+    private final CredentialCache credentialCache;
+    private final PasswordHashingService passwordHashingService;
+    private final PasswordEncoder passwordEncoder;
+    private final UserDetailsPasswordService passwordUpgrades;
+    private final Set<String> adminEmails;
+
+    public CachingReactiveAuthenticationManager(ReactiveUserService userService,
+                                                CredentialCache credentialCache,
+                                                PasswordHashingService passwordHashingService,
+                                                PasswordEncoder passwordEncoder,
+                                                UserDetailsPasswordService passwordUpgrades,
+                                                Set<String> adminEmails) {
+        this.userService = userService;
+        this.credentialCache = credentialCache;
+        this.passwordHashingService = passwordHashingService;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordUpgrades = passwordUpgrades;
+        this.adminEmails = adminEmails;
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        String email = authentication.getName();
+        Object credentials = authentication.getCredentials();
+        if (credentials == null) {
+            return Mono.error(new BadCredentialsException("Bad credentials"));
+        }
+        String presentedPassword = credentials.toString();
+
+        return userService.findProfileByEmail(email)
+                .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Bad credentials")))
+                .flatMap(user -> matches(user, presentedPassword).flatMap(matches -> matches
+                        ? Mono.just(authenticated(user, presentedPassword))
+                        : Mono.error(new BadCredentialsException("Bad credentials"))));
+    }
+
+    private Mono<Boolean> matches(UserProfile user, String presentedPassword) {
+        if (credentialCache.matches(user.email(), presentedPassword, user.password())) {
+            return Mono.just(true);
+        }
+        // Full BCrypt check; only successful verifications are cached. A saturated pool answers 503
+        // rather than 401, so clients back off instead of assuming their password is wrong.
+        return Mono.fromFuture(() -> passwordHashingService.matches(presentedPassword, user.password()))
+                .publishOn(Schedulers.parallel())
+                .doOnNext(matches -> {
+                    if (matches) {
+                        credentialCache.put(user.email(), presentedPassword, user.password());
+                    }
+                })
+                .onErrorMap(RejectedExecutionException.class,
+                        e -> new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Server busy; try again shortly", e));
+    }
+
+    private Authentication authenticated(UserProfile user, String presentedPassword) {
+        // The request does not wait for the new hash; the upgrade stores it through JPA on the hashing pool
+        if (passwordEncoder.upgradeEncoding(user.password())) {
+            passwordHashingService.upgrade(User.withUsername(user.email()).password(user.password()).build(),
+                    presentedPassword, passwordUpgrades);
+        }
+        UsernamePasswordAuthenticationToken token = UsernamePasswordAuthenticationToken.authenticated(user.email(), null,
+                adminEmails.contains(user.email()) ? ADMIN_AUTHORITIES : List.of());
+        token.setDetails(user);
+        return token;
+    }
+}
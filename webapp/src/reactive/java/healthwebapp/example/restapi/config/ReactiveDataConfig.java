@@ -0,0 +1,64 @@
+package healthwebapp.example.restapi.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import java.time.Duration;
+
+/**
+ * R2DBC access for the reactive profile, to the same database as the JDBC pool. The JDBC pool stays:
+ * Flyway, the outbox dispatcher, the token sweeper and the email filter keep running on it.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveDataConfig {
+
+    // Sized like the JDBC pools (DataSourceConfig), without the cap by request threads, which a
+    // reactive server does not have
+    @Bean(destroyMethod = "dispose")
+    public ConnectionPool reactiveConnectionPool(@Value("${spring.r2dbc.url}") String url,
+                                                 @Value("${spring.r2dbc.username:}") String username,
+                                                 @Value("${spring.r2dbc.password:}") String password,
+                                                 @Value("${db.pool.cores:0}") int cores,
+                                                 @Value("${spring.datasource.hikari.connection-timeout:5000}") long acquireTimeoutMs,
+                                                 @Value("${spring.datasource.hikari.max-lifetime:1800000}") long maxLifetimeMs) {
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(url).mutate();
+        if (!username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (!password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        int size = DataSourceConfig.poolSize(cores > 0 ? cores : Runtime.getRuntime().availableProcessors(),
+                Integer.MAX_VALUE);
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("reactive")
+                .initialSize(1)
+                .maxSize(size)
+                .maxAcquireTime(Duration.ofMillis(acquireTimeoutMs))
+                .maxLifeTime(Duration.ofMillis(maxLifetimeMs))
+                .build());
+    }
+
+    @Bean
+    public DatabaseClient databaseClient(ConnectionFactory connectionFactory) {
+        return DatabaseClient.create(connectionFactory);
+    }
+
+    // The transaction manager is deliberately not a bean: next to JPA's it would leave @Transactional
+    // without a unique default
+    @Bean
+    public TransactionalOperator reactiveTransactions(ConnectionFactory connectionFactory) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+    }
+}
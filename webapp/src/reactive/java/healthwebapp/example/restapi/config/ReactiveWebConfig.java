@@ -0,0 +1,66 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.service.CredentialCache;
+import healthwebapp.example.restapi.service.PasswordHashingService;
+import healthwebapp.example.restapi.service.ReactiveUserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.savedrequest.NoOpServerRequestCache;
+
+import java.util.Set;
+
+/**
+ * Web server and security for the reactive profile (spring.main.web-application-type=reactive, see
+ * application-reactive.properties). The rules are WebSecurityConfig's for the endpoints served here.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig {
+
+    // Reactor Netty; left to itself Boot would run the reactive stack on Tomcat, which is on the classpath
+    // for the servlet stack
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public ReactiveAuthenticationManager basicAuthenticationManager(ReactiveUserService userService,
+                                                                    CredentialCache credentialCache,
+                                                                    PasswordHashingService passwordHashingService,
+                                                                    PasswordEncoder passwordEncoder,
+                                                                    UserDetailsPasswordService passwordUpgrades,
+                                                                    @Value("${admin.emails:}") Set<String> adminEmails) {
+        return new CachingReactiveAuthenticationManager(userService, credentialCache, passwordHashingService,
+                passwordEncoder, passwordUpgrades, adminEmails);
+    }
+
+    // Stateless like the servlet chain: no session for the security context or for saved requests
+    @Bean
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                         ReactiveAuthenticationManager authenticationManager) {
+        return http
+                .csrf(csrf -> csrf.disable())
+                .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+                .requestCache(cache -> cache.requestCache(NoOpServerRequestCache.getInstance()))
+                .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers("/healthz").permitAll()
+                        .matchers(EndpointRequest.to("health", "prometheus")).permitAll()
+                        .pathMatchers(HttpMethod.POST, "/v1/user").permitAll()
+                        .pathMatchers(HttpMethod.DELETE, "/v1/user/self").permitAll()
+                        .anyExchange().authenticated())
+                .httpBasic(basic -> basic.authenticationManager(authenticationManager))
+                .build();
+    }
+}
@@ -0,0 +1,342 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.dto.PictureUploadConfirmation;
+import healthwebapp.example.restapi.dto.PictureUploadRequest;
+import healthwebapp.example.restapi.dto.PictureUploadResponse;
+import healthwebapp.example.restapi.dto.UserDTO;
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.service.CustomS3Service;
+import healthwebapp.example.restapi.service.ReactiveUserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.http.server.reactive.observation.ServerRequestObservationContext;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import jakarta.validation.Valid;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * UserController for the reactive profile: the same /v1/user contract (statuses, bodies, ETags and
+ * cache headers) on WebFlux, served by ReactiveUserService. Bulk import/export and bearer tokens
+ * remain servlet-only.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/v1/user")
+public class ReactiveUserController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserController.class);
+
+    // Form field that carries the profile picture in multipart uploads
+    private static final String PROFILE_PIC_PART = "profilePic";
+
+    private final ReactiveUserService userService;
+
+    public ReactiveUserController(ReactiveUserService userService) {
+        this.userService = userService;
+    }
+
+    // Create a new user
+    @PostMapping
+    public Mono<ResponseEntity<?>> createUser(@RequestBody User user) {
+        logger.info("Received request to create a new user");
+
+        // Check if the email is already in use; usually answered by the email filter without a query
+        return userService.isEmailInUse(user.getEmail()).flatMap(inUse -> {
+            if (inUse) {
+                logger.warn("Email already in use: {}", user.getEmail());
+                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email already in use"));
+            }
+
+            // New accounts stay unverified until the emailed token is redeemed
+            user.setVerified(false);
+
+            return userService.encodePassword(user.getPassword())
+                    .flatMap(encodedPassword -> {
+                        user.setPassword(encodedPassword);
+                        return userService.createUser(user);
+                    })
+                    .<ResponseEntity<?>>map(id -> {
+                        logger.info("New user created with ID: {}, email: {}", id, user.getEmail());
+                        return ResponseEntity.status(HttpStatus.CREATED).build();
+                    })
+                    // Registered concurrently or elsewhere since the filter last saw the table
+                    .onErrorResume(DataIntegrityViolationException.class, e -> userService.findProfileByEmail(user.getEmail())
+                            .hasElement()
+                            .flatMap(exists -> {
+                                if (!exists) {
+                                    return Mono.error(e);
+                                }
+                                logger.warn("Email already in use: {}", user.getEmail());
+                                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Email already in use"));
+                            }));
+        }).onErrorResume(RejectedExecutionException.class, e -> Mono.just(hashingUnavailable()));
+    }
+
+    @DeleteMapping("/self")
+    public Mono<ResponseEntity<String>> deleteUser(@RequestParam("email") String email, ServerWebExchange exchange) {
+        logger.info("Received request to delete user with email: {}", email);
+
+        return userService.findProfileByEmail(email)
+                .flatMap(user -> userService.deleteUser(user)
+                        .then(Mono.defer(() -> {
+                            logger.info("User with email {} deleted successfully", email);
+                            // Then its profile picture; the account is gone either way, so an S3 failure only
+                            // orphans the objects
+                            return userService.deleteProfilePictureObjects(user)
+                                    .onErrorResume(e -> {
+                                        logger.error("Could not delete profile picture {} of deleted user {}: {}",
+                                                user.pfpKey(), user.id(), e.getMessage());
+                                        return Mono.empty();
+                                    })
+                                    .thenReturn(ResponseEntity.ok("User deleted successfully"));
+                        }))
+                        .onErrorResume(e -> {
+                            logger.error("Error deleting user with email {}: {}", email, e.getMessage());
+                            recordError(exchange, e);
+                            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                    .body("Failed to delete user due to: " + e.getMessage()));
+                        }))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    logger.warn("User not found for email: {}", email);
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+                }));
+    }
+
+    // Verify the user's email
+    @GetMapping("/verify")
+    public Mono<ResponseEntity<String>> verifyUser(@RequestParam("token") String token) {
+        return userService.verifyEmail(token).map(outcome -> switch (outcome) {
+            case VERIFIED -> {
+                logger.info("Account verified successfully");
+                yield ResponseEntity.ok("Account verified successfully.");
+            }
+            case EXPIRED -> {
+                logger.warn("Verification failed: Token expired");
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Verification link has expired.");
+            }
+            default -> {
+                logger.warn("Verification failed: Invalid token");
+                yield ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid or expired verification token.");
+            }
+        });
+    }
+
+    // Get the authenticated user's details; polling clients revalidate with If-None-Match
+    @GetMapping("/self")
+    public ResponseEntity<UserDTO> getAuthenticatedUser(
+            Authentication authentication,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Received request to get authenticated user details");
+
+        UserProfile user = authenticatedUser(authentication);
+        if (!user.verified()) {
+            logger.warn("Access blocked for unverified user: {}", user.email());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        String etag = userService.etag(user);
+        boolean notModified = UserController.matchesAny(ifNoneMatch, etag);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(notModified ? HttpStatus.NOT_MODIFIED : HttpStatus.OK)
+                .eTag(etag)
+                .varyBy(HttpHeaders.AUTHORIZATION);
+        // Picture URLs are pre-signed; the client may reuse the response while they stay valid.
+        // Otherwise it may store the response but must revalidate it.
+        response.cacheControl(userService.cacheableFor(user)
+                .map(fresh -> CacheControl.maxAge(fresh).cachePrivate())
+                .orElseGet(() -> CacheControl.noCache().cachePrivate()));
+        return notModified ? response.build() : response.body(userService.convertToDTO(user));
+    }
+
+    // Update the authenticated user's details; with If-Match only if nobody changed them since
+    @PutMapping("/self")
+    public Mono<ResponseEntity<?>> updateAuthenticatedUser(Authentication authentication, @RequestBody User user,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        logger.info("Received request to update authenticated user");
+
+        UserProfile existingUser = authenticatedUser(authentication);
+
+        // A new password is hashed on the hashing pool before the update; an empty one keeps the stored hash
+        String newPassword = user.getPassword();
+        Mono<Optional<String>> encodedPassword = (newPassword == null || newPassword.isEmpty())
+                ? Mono.just(Optional.empty())
+                : userService.encodePassword(newPassword).map(Optional::of);
+
+        // Only the supplied fields are written, in a single UPDATE; If-Match adds the version to its WHERE clause
+        OptionalLong version = UserController.requiredVersion(ifMatch, existingUser);
+        return encodedPassword
+                .flatMap(password -> userService.updateProfile(existingUser, version, user.getFirstName(),
+                        user.getLastName(), password.orElse(null)))
+                .<ResponseEntity<?>>map(updatedUser -> {
+                    UserDTO updatedUserDTO = userService.convertToDTO(updatedUser);
+                    // The new version is only known exactly after a conditional update
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (version.isPresent()) {
+                        response.eTag(userService.etag(updatedUser));
+                    }
+                    return response.body(updatedUserDTO);
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    if (version.isPresent()) {
+                        logger.warn("Update with a stale If-Match rejected for: {}", existingUser.email());
+                        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body("User was modified since it was read");
+                    }
+                    logger.warn("User deleted during update: {}", existingUser.email());
+                    return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User not found");
+                }))
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(hashingUnavailable()));
+    }
+
+    // Upload or update profile picture; the picture part is streamed straight through to S3
+    @PostMapping(value = "/self/pic", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<UserDTO>> uploadProfilePic(Authentication authentication, @RequestBody Flux<PartEvent> parts,
+                                                          ServerWebExchange exchange) {
+        logger.info("Received request to upload or update profile picture");
+
+        UserProfile user = authenticatedUser(authentication);
+        return parts.windowUntil(PartEvent::isLast)
+                .concatMap(part -> part.switchOnFirst((first, events) -> {
+                    if (first.get() instanceof FilePartEvent file && PROFILE_PIC_PART.equals(file.name())) {
+                        return userService.uploadProfilePicture(events.map(PartEvent::content), user);
+                    }
+                    // Any other part is read past
+                    return events.map(PartEvent::content).doOnNext(DataBufferUtils::release).then(Mono.<UserProfile>empty());
+                }))
+                .next()
+                .map(updatedUser -> ResponseEntity.status(HttpStatus.CREATED).body(userService.convertToDTO(updatedUser)))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    logger.warn("Profile picture upload is missing the '{}' part", PROFILE_PIC_PART);
+                    return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+                }))
+                .onErrorResume(e -> {
+                    if (e instanceof IllegalArgumentException) {
+                        logger.warn("Uploaded profile picture rejected: {}", e.getMessage());
+                        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+                    }
+                    logger.error("Error uploading profile picture: {}", e.getMessage());
+                    recordError(exchange, e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null));
+                });
+    }
+
+    // Direct upload, step one: a JSON body instead of a multipart one asks for a pre-signed S3 URL
+    @PostMapping(value = "/self/pic", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<PictureUploadResponse>> presignProfilePic(Authentication authentication,
+                                                                         @Valid @RequestBody Mono<PictureUploadRequest> body) {
+        logger.info("Received request for a profile picture upload URL");
+
+        UserProfile user = authenticatedUser(authentication);
+        return body
+                .map(request -> {
+                    try {
+                        CustomS3Service.PresignedUpload upload = userService.presignProfilePicture(request.contentType(),
+                                request.contentLength(), user);
+                        return ResponseEntity.ok(new PictureUploadResponse(
+                                upload.key(), upload.url(), "PUT", upload.headers(), upload.expiresAt()));
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Rejected profile picture upload request: {}", e.getMessage());
+                        return ResponseEntity.status(HttpStatus.BAD_REQUEST).<PictureUploadResponse>build();
+                    }
+                })
+                .onErrorResume(WebExchangeBindException.class, e -> {
+                    logger.warn("Invalid profile picture upload request: {}", e.getFieldErrors());
+                    return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+                });
+    }
+
+    // Direct upload, step two: record the uploaded picture once it has been checked and processed
+    @PostMapping(value = "/self/pic/confirm", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<UserDTO>> confirmProfilePic(Authentication authentication,
+                                                           @Valid @RequestBody Mono<PictureUploadConfirmation> body,
+                                                           ServerWebExchange exchange) {
+        logger.info("Received request to confirm a profile picture upload");
+
+        UserProfile user = authenticatedUser(authentication);
+        return body
+                .flatMap(confirmation -> userService.confirmProfilePicture(confirmation.key(), user)
+                        .map(updatedUser -> ResponseEntity.status(HttpStatus.CREATED).body(userService.convertToDTO(updatedUser)))
+                        .onErrorResume(e -> {
+                            if (e instanceof IllegalArgumentException) {
+                                logger.warn("Uploaded profile picture rejected: {}", e.getMessage());
+                                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build());
+                            }
+                            if (e instanceof S3Exception s3Error && s3Error.statusCode() == HttpStatus.NOT_FOUND.value()) {
+                                logger.warn("Profile picture confirmed before it was uploaded: {}", confirmation.key());
+                                return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+                            }
+                            logger.error("Error confirming profile picture: {}", e.getMessage());
+                            recordError(exchange, e);
+                            return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+                        }))
+                .onErrorResume(WebExchangeBindException.class, e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).build()));
+    }
+
+    // Delete profile picture
+    @DeleteMapping("/self/pic")
+    public Mono<ResponseEntity<UserDTO>> deleteProfilePic(Authentication authentication, ServerWebExchange exchange) {
+        logger.info("Received request to delete profile picture");
+
+        UserProfile user = authenticatedUser(authentication);
+        return userService.deleteProfilePicture(user)
+                .then(Mono.fromSupplier(() -> {
+                    UserDTO userDTO = userService.convertToDTO(user);
+                    userDTO.setFileName(null);
+                    userDTO.setUrl(null);
+                    userDTO.setUploadDate(null);
+                    userDTO.setVariants(List.of());
+
+                    return ResponseEntity.ok(userDTO);
+                }))
+                .onErrorResume(e -> {
+                    logger.error("Error deleting profile picture: {}", e.getMessage());
+                    recordError(exchange, e);
+                    return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null));
+                });
+    }
+
+    // Unsupported HTTP methods for profile picture
+    @RequestMapping(value = "/self/pic", method = {RequestMethod.PUT, RequestMethod.PATCH, RequestMethod.OPTIONS, RequestMethod.HEAD})
+    public ResponseEntity<Void> handleUnsupportedMethods() {
+        logger.info("Received unsupported HTTP method on /self/pic");
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).build();
+    }
+
+    // Loaded by CachingReactiveAuthenticationManager for this request
+    private static UserProfile authenticatedUser(Authentication authentication) {
+        return (UserProfile) authentication.getDetails();
+    }
+
+    // A saturated hashing pool answers 503 so clients back off
+    private static ResponseEntity<?> hashingUnavailable() {
+        logger.warn("Password hashing pool saturated; rejecting the request");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Server busy; try again shortly");
+    }
+
+    // Handled failures still answer with a status; attach the cause so http.server.requests tags its exception class
+    private static void recordError(ServerWebExchange exchange, Throwable error) {
+        ServerRequestObservationContext.findCurrent(exchange.getAttributes()).ifPresent(context -> context.setError(error));
+    }
+}
@@ -0,0 +1,221 @@
+package healthwebapp.example.restapi.repository;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.entity.VerificationToken;
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC counterpart of the UserRepository and VerificationTokenRepository queries the reactive profile
+ * needs, as plain SQL. The writes match their JPQL versions: by primary key, bumping the version, and
+ * returning the number of rows changed. Callers provide the transaction.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveUserRepository {
+
+    private static final String SELECT_PROFILE = "select id, email, password, first_name, last_name, is_verified,"
+            + " account_created, account_updated, profile_pic_url, profile_pic_upload_date, pfp_key, pfp_variants,"
+            + " version, password_updated from users where ";
+
+    private static final String INSERT_USER = "insert into users (email, password, first_name, last_name,"
+            + " is_verified, account_created, account_updated, version)"
+            + " values (:email, :password, :firstName, :lastName, false, :now, :now, 0)";
+
+    // Null names and password leave the columns as they are; passwordUpdated is only set with a password
+    private static final String UPDATE_PROFILE = "update users set first_name = coalesce(:firstName, first_name),"
+            + " last_name = coalesce(:lastName, last_name), password = coalesce(:password, password),"
+            + " password_updated = coalesce(:passwordUpdated, password_updated), account_updated = :now,"
+            + " version = version + 1 where id = :id";
+
+    // Only replaces the picture the caller last saw (previousKey, null for none), as in UserRepository
+    private static final String REPLACE_PICTURE = "update users set pfp_key = :pfpKey, pfp_variants = :variants,"
+            + " profile_pic_url = :url, profile_pic_upload_date = :now, account_updated = :now, version = version + 1"
+            + " where id = :id and pfp_key is not distinct from :previousKey";
+
+    private static final String CLEAR_PICTURE = "update users set pfp_key = null, pfp_variants = null,"
+            + " profile_pic_url = null, profile_pic_upload_date = null, account_updated = :now, version = version + 1"
+            + " where id = :id and pfp_key = :pfpKey";
+
+    private static final String MARK_VERIFIED = "update users set is_verified = true, account_updated = :now,"
+            + " version = version + 1 where id = :id and is_verified = false";
+
+    private static final String INSERT_TOKEN = "insert into verification_tokens (token_hash, user_id, expires_at)"
+            + " values (:tokenHash, :userId, :expiresAt)";
+
+    private static final String INSERT_OUTBOX = "insert into verification_outbox (payload, content_type, status,"
+            + " attempts, next_attempt_at, created_at) values (:payload, :contentType, :status, 0, :nextAttemptAt, :createdAt)";
+
+    // A stored verification token, without its hash
+    public record StoredToken(Long id, Long userId, LocalDateTime expiresAt) {
+    }
+
+    private final DatabaseClient databaseClient;
+
+    public ReactiveUserRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<UserProfile> findProfileByEmail(String email) {
+        return databaseClient.sql(SELECT_PROFILE + "email = :email")
+                .bind("email", email)
+                .map((row, metadata) -> toProfile(row))
+                .one();
+    }
+
+    public Mono<UserProfile> findProfileById(Long id) {
+        return databaseClient.sql(SELECT_PROFILE + "id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> toProfile(row))
+                .one();
+    }
+
+    public Mono<Boolean> existsByEmail(String email) {
+        return databaseClient.sql("select 1 from users where email = :email")
+                .bind("email", email)
+                .map((row, metadata) -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    // Inserts an unverified user created at now and returns its id; a taken email fails with DuplicateKeyException
+    public Mono<Long> insertUser(User user, LocalDateTime now) {
+        return databaseClient.sql(INSERT_USER)
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .bind("email", user.getEmail())
+                .bind("password", user.getPassword())
+                .bind("firstName", user.getFirstName())
+                .bind("lastName", user.getLastName())
+                .bind("now", now)
+                .map((row, metadata) -> row.get(0, Long.class))
+                .one();
+    }
+
+    public Mono<Integer> updateProfile(Long id, String firstName, String lastName, String password, LocalDateTime now) {
+        return update(UPDATE_PROFILE, id, firstName, lastName, password, now, null);
+    }
+
+    // updateProfile for an If-Match request: 0 as well when the row has moved past version
+    public Mono<Integer> updateProfileAtVersion(Long id, long version, String firstName, String lastName, String password,
+                                                LocalDateTime now) {
+        return update(UPDATE_PROFILE + " and version = :version", id, firstName, lastName, password, now, version);
+    }
+
+    private Mono<Integer> update(String sql, Long id, String firstName, String lastName, String password,
+                                 LocalDateTime now, Long version) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql)
+                .bind("id", id)
+                .bind("now", now);
+        spec = bindNullable(spec, "firstName", firstName, String.class);
+        spec = bindNullable(spec, "lastName", lastName, String.class);
+        spec = bindNullable(spec, "password", password, String.class);
+        spec = bindNullable(spec, "passwordUpdated", password != null ? now : null, LocalDateTime.class);
+        if (version != null) {
+            spec = spec.bind("version", version);
+        }
+        return spec.fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    public Mono<Integer> replaceProfilePicture(Long id, String previousKey, String pfpKey, String variants, String url,
+                                               LocalDateTime now) {
+        DatabaseClient.GenericExecuteSpec spec = bindNullable(databaseClient.sql(REPLACE_PICTURE),
+                "previousKey", previousKey, String.class);
+        return bindNullable(spec, "variants", variants, String.class)
+                .bind("id", id)
+                .bind("pfpKey", pfpKey)
+                .bind("url", url)
+                .bind("now", now)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    // Only clears the picture that was deleted from S3, not one uploaded in the meantime
+    public Mono<Integer> clearProfilePicture(Long id, String pfpKey, LocalDateTime now) {
+        return databaseClient.sql(CLEAR_PICTURE)
+                .bind("id", id)
+                .bind("pfpKey", pfpKey)
+                .bind("now", now)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    // Flip the verified flag; also 0 when the user is already verified
+    public Mono<Integer> markVerified(Long id, LocalDateTime now) {
+        return databaseClient.sql(MARK_VERIFIED)
+                .bind("id", id)
+                .bind("now", now)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    public Mono<Integer> deleteUserById(Long id) {
+        return databaseClient.sql("delete from users where id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    public Mono<Void> insertVerificationToken(VerificationToken token) {
+        return databaseClient.sql(INSERT_TOKEN)
+                .bind("tokenHash", token.getTokenHash())
+                .bind("userId", token.getUserId())
+                .bind("expiresAt", token.getExpiresAt())
+                .then();
+    }
+
+    public Mono<StoredToken> findTokenByHash(byte[] tokenHash) {
+        return databaseClient.sql("select id, user_id, expires_at from verification_tokens where token_hash = :tokenHash")
+                .bind("tokenHash", tokenHash)
+                .map((row, metadata) -> new StoredToken(row.get("id", Long.class), row.get("user_id", Long.class),
+                        row.get("expires_at", LocalDateTime.class)))
+                .one();
+    }
+
+    public Mono<Integer> deleteTokenById(Long id) {
+        return databaseClient.sql("delete from verification_tokens where id = :id")
+                .bind("id", id)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    public Mono<Integer> deleteTokensByUserId(Long userId) {
+        return databaseClient.sql("delete from verification_tokens where user_id = :userId")
+                .bind("userId", userId)
+                .fetch().rowsUpdated().map(Long::intValue);
+    }
+
+    public Mono<Void> insertOutboxMessage(OutboxMessage message) {
+        return bindNullable(databaseClient.sql(INSERT_OUTBOX), "contentType", message.getContentType(), String.class)
+                .bind("payload", message.getPayload())
+                .bind("status", message.getStatus().name())
+                .bind("nextAttemptAt", message.getNextAttemptAt())
+                .bind("createdAt", message.getCreatedAt())
+                .then();
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec, String name,
+                                                                  Object value, Class<?> type) {
+        return value != null ? spec.bind(name, value) : spec.bindNull(name, type);
+    }
+
+    private static UserProfile toProfile(Row row) {
+        return new UserProfile(
+                row.get("id", Long.class),
+                row.get("email", String.class),
+                row.get("password", String.class),
+                row.get("first_name", String.class),
+                row.get("last_name", String.class),
+                Boolean.TRUE.equals(row.get("is_verified", Boolean.class)),
+                row.get("account_created", LocalDateTime.class),
+                row.get("account_updated", LocalDateTime.class),
+                row.get("profile_pic_url", String.class),
+                row.get("profile_pic_upload_date", LocalDateTime.class),
+                row.get("pfp_key", String.class),
+                row.get("pfp_variants", String.class),
+                row.get("version", Long.class),
+                row.get("password_updated", LocalDateTime.class)
+        );
+    }
+}
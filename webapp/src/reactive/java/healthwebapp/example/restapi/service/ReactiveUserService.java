@@ -0,0 +1,289 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.dto.UserDTO;
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.ReactiveUserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.stream.Stream;
+
+/**
+ * UserService for the reactive profile: the same operations on R2DBC, without blocking the event loop.
+ * BCrypt runs on the PasswordHashingService pool and S3 calls use the async client; DTOs, ETags, picture
+ * URLs, verification tokens and messages come from the same helpers as on the servlet stack.
+ *
+ * Reads always go to the database (one indexed query); UserProfileCache and the replica are JDBC only.
+ */
+@Service
+@Profile("reactive")
+public class ReactiveUserService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveUserService.class);
+
+    private final ReactiveUserRepository userRepository;
+    private final TransactionalOperator transactions;
+    private final UserService userService;
+    private final PasswordHashingService passwordHashingService;
+    private final CredentialCache credentialCache;
+    private final EmailExistenceFilter emailExistenceFilter;
+    private final VerificationTokenService verificationTokenService;
+    private final CustomS3Service s3Service;
+
+    public ReactiveUserService(ReactiveUserRepository userRepository,
+                               TransactionalOperator transactions,
+                               UserService userService,
+                               PasswordHashingService passwordHashingService,
+                               CredentialCache credentialCache,
+                               EmailExistenceFilter emailExistenceFilter,
+                               VerificationTokenService verificationTokenService,
+                               CustomS3Service s3Service) {
+        this.userRepository = userRepository;
+        this.transactions = transactions;
+        this.userService = userService;
+        this.passwordHashingService = passwordHashingService;
+        this.credentialCache = credentialCache;
+        this.emailExistenceFilter = emailExistenceFilter;
+        this.verificationTokenService = verificationTokenService;
+        this.s3Service = s3Service;
+    }
+
+    public Mono<UserProfile> findProfileByEmail(String email) {
+        return userRepository.findProfileByEmail(email);
+    }
+
+    // The representation helpers are UserService's; they do no I/O
+
+    public UserDTO convertToDTO(UserProfile user) {
+        return userService.convertToDTO(user);
+    }
+
+    public String etag(UserProfile user) {
+        return userService.etag(user);
+    }
+
+    public Optional<Duration> cacheableFor(UserProfile user) {
+        return userService.cacheableFor(user);
+    }
+
+    // Duplicate-email pre-check for signups, as in UserService; the unique constraint has the last word
+    public Mono<Boolean> isEmailInUse(String email) {
+        if (!emailExistenceFilter.mightExist(email)) {
+            return Mono.just(false);
+        }
+        return userRepository.existsByEmail(email).doOnNext(inUse -> {
+            if (!inUse) {
+                emailExistenceFilter.recordFalsePositive();
+            }
+        });
+    }
+
+    // Hashes on the hashing pool, then moves on to the parallel scheduler so its threads only hash.
+    // Fails with RejectedExecutionException when the pool is saturated.
+    public Mono<String> encodePassword(String rawPassword) {
+        return Mono.fromFuture(() -> passwordHashingService.encode(rawPassword))
+                .publishOn(Schedulers.parallel());
+    }
+
+    // Inserts the user (password already hashed), its token and the verification message in one transaction
+    // and returns the new id; a taken email fails with DuplicateKeyException
+    public Mono<Long> createUser(User user) {
+        LocalDateTime now = LocalDateTime.now();
+        return userRepository.insertUser(user, now)
+                .flatMap(id -> {
+                    VerificationTokenService.NewToken token = verificationTokenService.newToken(id, now);
+                    return userRepository.insertVerificationToken(token.row())
+                            .then(userRepository.insertOutboxMessage(
+                                    userService.verificationMessage(id, user.getEmail(), token.issued(), now)))
+                            .thenReturn(id);
+                })
+                .as(transactions::transactional)
+                // Only after the commit, so a failed insert leaves no false positive in the filter
+                .doOnNext(id -> emailExistenceFilter.added(user.getEmail()));
+    }
+
+    // UserService.updateProfile: null values keep the stored ones, and with a version only while the row is
+    // still at it. Returns the profile as written, or empty when nothing was updated.
+    public Mono<UserProfile> updateProfile(UserProfile user, OptionalLong version, String firstName, String lastName,
+                                           String encodedPassword) {
+        LocalDateTime now = LocalDateTime.now();
+        Mono<Integer> updated = version.isPresent()
+                ? userRepository.updateProfileAtVersion(user.id(), version.getAsLong(), firstName, lastName, encodedPassword, now)
+                : userRepository.updateProfile(user.id(), firstName, lastName, encodedPassword, now);
+        return updated
+                .filter(rows -> rows > 0)
+                .map(rows -> {
+                    if (encodedPassword != null) {
+                        credentialCache.invalidate(user.email());
+                    }
+                    return UserService.updatedProfile(user, version.orElse(user.version()), firstName, lastName,
+                            encodedPassword, now);
+                });
+    }
+
+    // VerificationTokenService.verify on R2DBC: look up the hash, delete the token, flip the flag
+    public Mono<VerificationTokenService.Outcome> verifyEmail(String token) {
+        return userRepository.findTokenByHash(VerificationTokenService.hash(token))
+                .flatMap(found -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    if (now.isAfter(found.expiresAt())) {
+                        return Mono.just(VerificationTokenService.Outcome.EXPIRED);
+                    }
+                    return userRepository.deleteTokenById(found.id()).flatMap(deleted -> deleted == 0
+                            ? Mono.just(VerificationTokenService.Outcome.INVALID)
+                            : userRepository.markVerified(found.userId(), now).map(verified -> {
+                                if (verified == 0) {
+                                    logger.warn("Verification token {} pointed at a missing or already verified user {}",
+                                            found.id(), found.userId());
+                                    return VerificationTokenService.Outcome.INVALID;
+                                }
+                                return VerificationTokenService.Outcome.VERIFIED;
+                            }));
+                })
+                .defaultIfEmpty(VerificationTokenService.Outcome.INVALID)
+                .as(transactions::transactional);
+    }
+
+    // The user and its tokens go in one transaction; the picture objects afterwards (deleteProfilePictureObjects)
+    public Mono<Void> deleteUser(UserProfile user) {
+        return userRepository.deleteTokensByUserId(user.id())
+                .then(userRepository.deleteUserById(user.id()))
+                .as(transactions::transactional)
+                .doOnSuccess(ignored -> {
+                    emailExistenceFilter.removed();
+                    credentialCache.invalidate(user.email());
+                })
+                .then();
+    }
+
+    public Mono<Void> deleteProfilePictureObjects(UserProfile user) {
+        if (user.pfpKey() == null) {
+            return Mono.empty();
+        }
+        return Mono.fromFuture(() -> s3Service.deleteImage(user.pfpKey(), UserService.variantNames(user.pfpVariants())));
+    }
+
+    /**
+     * Streams a multipart upload to S3 and records it on the user. CustomS3Service reads its input on the
+     * calling thread, so the body is read on the bounded elastic scheduler through a blocking stream,
+     * which requests the next buffers from the connection as the previous ones are consumed.
+     */
+    public Mono<UserProfile> uploadProfilePicture(Flux<DataBuffer> content, UserProfile user) {
+        return Mono.fromCallable(() -> {
+                    try (InputStream in = new DataBufferInputStream(content)) {
+                        return s3Service.uploadFile(in, UserService.pictureOwner(user));
+                    }
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(Mono::fromFuture)
+                .flatMap(stored -> recordProfilePicture(stored, user));
+    }
+
+    // Direct upload, step one; signing the URL is local work, nothing to wait for
+    public CustomS3Service.PresignedUpload presignProfilePicture(String contentType, long contentLength, UserProfile user) {
+        return userService.presignProfilePicture(contentType, contentLength, user);
+    }
+
+    // Direct upload, step two (see UserService.confirmProfilePicture)
+    public Mono<UserProfile> confirmProfilePicture(String key, UserProfile user) {
+        return Mono.fromFuture(() -> s3Service.confirmUpload(key, UserService.pictureOwner(user)))
+                .flatMap(stored -> recordProfilePicture(stored, user));
+    }
+
+    // UserService.recordProfilePicture on R2DBC; the picture, its cleanup and the result are UserService's
+    private Mono<UserProfile> recordProfilePicture(CustomS3Service.StoredImage stored, UserProfile user) {
+        UserService.NewPicture picture = userService.newPicture(stored);
+        return replacePicture(user, picture)
+                .switchIfEmpty(Mono.defer(() -> Mono.fromFuture(() -> userService.<UserProfile>discardPicture(stored, user.id()))))
+                .flatMap(replaced -> Mono.fromFuture(() -> userService.deleteReplacedPicture(
+                                user.id(), replaced.pfpKey(), replaced.pfpVariants()))
+                        .thenReturn(picture.appliedTo(user, replaced.version())));
+    }
+
+    // Emits the row as it was when the picture was replaced, re-reading it whenever another picture got in first;
+    // empty when the user is gone
+    private Mono<UserProfile> replacePicture(UserProfile current, UserService.NewPicture picture) {
+        return userRepository.replaceProfilePicture(current.id(), current.pfpKey(), picture.key(), picture.variants(),
+                        picture.url(), picture.recordedAt())
+                .flatMap(updated -> updated > 0
+                        ? Mono.just(current)
+                        : userRepository.findProfileById(current.id())
+                                .flatMap(reread -> replacePicture(reread, picture)));
+    }
+
+    // Deletes the picture and its variants from S3, then clears it on the user unless a new one replaced it
+    public Mono<Void> deleteProfilePicture(UserProfile user) {
+        if (user.profilePicUrl() == null) {
+            return Mono.empty();
+        }
+        String key = user.pfpKey();
+        return Mono.fromFuture(() -> s3Service.deleteImage(key, UserService.variantNames(user.pfpVariants())))
+                .then(userRepository.clearProfilePicture(user.id(), key, LocalDateTime.now()))
+                .then();
+    }
+
+    // Blocking view of a body; buffers are released once read, and the ones still queued when it is closed early
+    private static final class DataBufferInputStream extends InputStream {
+
+        private final Stream<DataBuffer> buffers;
+        private final Iterator<DataBuffer> iterator;
+        private DataBuffer current;
+
+        DataBufferInputStream(Flux<DataBuffer> content) {
+            this.buffers = content.doOnDiscard(DataBuffer.class, DataBufferUtils::release).toStream(2);
+            this.iterator = buffers.iterator();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null || current.readableByteCount() == 0) {
+                release();
+                if (!iterator.hasNext()) {
+                    return -1;
+                }
+                current = iterator.next();
+            }
+            int n = Math.min(len, current.readableByteCount());
+            current.read(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            release();
+            buffers.close();
+        }
+
+        private void release() {
+            if (current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+        }
+    }
+}
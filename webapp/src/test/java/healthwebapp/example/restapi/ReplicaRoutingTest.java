@@ -0,0 +1,112 @@
+package healthwebapp.example.restapi;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.service.UserService;
+import healthwebapp.example.restapi.service.VerificationTokenService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Two separate H2 databases stand in for the primary and a replica that never catches up
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "db.replica.url=" + ReplicaRoutingTest.REPLICA_URL})
+@ActiveProfiles("test")
+class ReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VerificationTokenService verificationTokenService;
+
+    @BeforeAll
+    static void migrateReplica() throws SQLException {
+        Flyway.configure()
+                .dataSource(REPLICA_URL, "sa", "password")
+                .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+                .load()
+                .migrate();
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "password");
+             Statement statement = connection.createStatement()) {
+            statement.execute("delete from users");
+            statement.execute("insert into users (email, password, first_name, last_name, is_verified, version)"
+                    + " values ('replica.only@example.com', 'x', 'Replica', 'Only', true, 0)");
+        }
+    }
+
+    @Test
+    void testReadOnlyLookupsUseReplica() {
+        assertTrue(userService.findProfileByEmail("replica.only@example.com").isPresent());
+        assertFalse(userService.findByEmail("replica.only@example.com").isPresent());
+
+        // Written straight through the repository, so no read-your-writes window
+        userRepository.save(newUser("primary.only@example.com"));
+        assertTrue(userService.findByEmail("primary.only@example.com").isPresent());
+        assertFalse(userService.findProfileByEmail("primary.only@example.com").isPresent());
+    }
+
+    @Test
+    void testOwnWritesAreReadFromPrimary() {
+        User created = userService.createUser(newUser("new.signup@example.com"));
+
+        assertTrue(userService.findProfileByEmail("new.signup@example.com").isPresent());
+        assertTrue(userService.updateProfile(userService.findProfileByEmail(created.getEmail()).orElseThrow(),
+                "Renamed", null, null).isPresent());
+        assertTrue(userService.findProfileByEmail("new.signup@example.com")
+                .filter(profile -> "Renamed".equals(profile.firstName())).isPresent());
+    }
+
+    // Verification only knows the user's id, so the stale row is recognized once the replica returns it
+    @Test
+    void testWriteKnownOnlyByIdIsReadFromPrimary() throws SQLException {
+        User created = userRepository.save(newUser("verify.by.id@example.com"));
+        copyToReplica(created);
+        VerificationTokenService.IssuedToken token = verificationTokenService.issue(created.getId(), LocalDateTime.now());
+
+        assertEquals(VerificationTokenService.Outcome.VERIFIED, verificationTokenService.verify(token.token()));
+        assertTrue(userService.findProfileByEmail("verify.by.id@example.com").orElseThrow().verified());
+    }
+
+    private static void copyToReplica(User user) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "password");
+             PreparedStatement statement = connection.prepareStatement("insert into users"
+                     + " (id, email, password, first_name, last_name, is_verified, version) values (?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setLong(1, user.getId());
+            statement.setString(2, user.getEmail());
+            statement.setString(3, user.getPassword());
+            statement.setString(4, user.getFirstName());
+            statement.setString(5, user.getLastName());
+            statement.setBoolean(6, user.isVerified());
+            statement.setLong(7, user.getVersion());
+            statement.executeUpdate();
+        }
+    }
+
+    private static User newUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("secret");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        return user;
+    }
+}
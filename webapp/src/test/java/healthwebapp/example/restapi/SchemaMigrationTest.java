@@ -0,0 +1,100 @@
+package healthwebapp.example.restapi;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the Flyway scripts against H2 in PostgreSQL mode, with the same settings as application.properties
+class SchemaMigrationTest {
+
+    @Test
+    void testEmptyDatabaseIsMigratedWithIndexes() throws SQLException {
+        String url = newDatabaseUrl();
+
+        Flyway flyway = flyway(url);
+        assertTrue(flyway.migrate().migrationsExecuted > 0);
+        assertEquals(0, flyway.info().pending().length);
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "")) {
+            Set<String> indexes = indexNames(connection);
+            assertTrue(indexes.contains("ux_verification_tokens_hash"));
+            assertTrue(indexes.contains("ix_verification_tokens_expires_at"));
+            assertTrue(indexes.contains("ix_verification_tokens_user_id"));
+            assertTrue(indexes.contains("ix_verification_outbox_pending"));
+        }
+    }
+
+    @Test
+    void testSchemaCreatedByDdlAutoIsBaselinedAndUpgraded() throws SQLException {
+        String url = newDatabaseUrl();
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            // What ddl-auto=update produced before the migrations existed
+            statement.execute("create table users (id bigint generated by default as identity primary key,"
+                    + " email varchar(255) not null unique, password varchar(255) not null,"
+                    + " first_name varchar(255) not null, last_name varchar(255) not null, pfp_key varchar(255),"
+                    + " is_verified boolean not null, account_created timestamp(6), account_updated timestamp(6),"
+                    + " profile_pic_url varchar(255), profile_pic_upload_date timestamp(6),"
+                    + " verification_token varchar(255), token_expiration_time timestamp(6))");
+            statement.execute("insert into users (email, password, first_name, last_name, is_verified, verification_token)"
+                    + " values ('jane.doe@example.com', 'x', 'Jane', 'Doe', false, 'legacy-token')");
+        }
+
+        flyway(url).migrate();
+
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement()) {
+            Set<String> columns = new HashSet<>();
+            try (ResultSet rs = statement.executeQuery(
+                    "select column_name from information_schema.columns where table_name = 'users'")) {
+                while (rs.next()) {
+                    columns.add(rs.getString(1).toLowerCase());
+                }
+            }
+            assertFalse(columns.contains("verification_token"));
+            assertFalse(columns.contains("token_expiration_time"));
+
+            try (ResultSet rs = statement.executeQuery("select count(*) from users")) {
+                rs.next();
+                assertEquals(1, rs.getInt(1));
+            }
+            assertTrue(indexNames(connection).contains("ux_verification_tokens_hash"));
+        }
+    }
+
+    private static Flyway flyway(String url) {
+        return Flyway.configure()
+                .dataSource(url, "sa", "")
+                .locations("classpath:db/migration/common", "classpath:db/migration/h2")
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load();
+    }
+
+    private static Set<String> indexNames(Connection connection) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select index_name from information_schema.indexes")) {
+            while (rs.next()) {
+                names.add(rs.getString(1).toLowerCase());
+            }
+        }
+        return names;
+    }
+
+    private static String newDatabaseUrl() {
+        return "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+}
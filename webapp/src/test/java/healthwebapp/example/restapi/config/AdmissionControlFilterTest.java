@@ -0,0 +1,65 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControlFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testClientIsShedAfterItsBurst() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(meterRegistry, true, 1, 2, 1024, 1000, 1000, 100);
+
+        assertEquals(200, signup(filter, "203.0.113.7").getStatus());
+        assertEquals(200, signup(filter, "203.0.113.7").getStatus());
+        MockHttpServletResponse shed = signup(filter, "203.0.113.7");
+        assertEquals(429, shed.getStatus());
+        // One permit a minute
+        assertTrue(Long.parseLong(shed.getHeader(HttpHeaders.RETRY_AFTER)) > 50);
+        assertEquals(1, meterRegistry.get("admission.rejected").tag("limit", "client").counter().count());
+
+        // Other clients and other endpoints are unaffected
+        assertEquals(200, signup(filter, "198.51.100.20").getStatus());
+        MockHttpServletRequest read = new MockHttpServletRequest("GET", "/v1/user/self");
+        read.setRemoteAddr("203.0.113.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(read, response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void testConcurrencyLimitHoldsUntilAsyncResponseCompletes() throws Exception {
+        AdmissionControlFilter filter = new AdmissionControlFilter(meterRegistry, true, 600, 100, 1024, 1000, 1000, 1);
+
+        // The signup continues on another thread, as with the hashing pool
+        MockHttpServletRequest first = signupRequest("203.0.113.7");
+        first.setAsyncSupported(true);
+        filter.doFilter(first, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        assertEquals(429, signup(filter, "198.51.100.20").getStatus());
+        assertEquals(1, meterRegistry.get("admission.rejected").tag("limit", "concurrency").counter().count());
+
+        first.getAsyncContext().complete();
+        assertEquals(200, signup(filter, "198.51.100.20").getStatus());
+    }
+
+    private static MockHttpServletResponse signup(AdmissionControlFilter filter, String ip) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(signupRequest(ip), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest signupRequest(String ip) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/user");
+        request.setRemoteAddr(ip);
+        return request;
+    }
+}
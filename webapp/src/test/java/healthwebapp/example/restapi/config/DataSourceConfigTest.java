@@ -0,0 +1,36 @@
+package healthwebapp.example.restapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DataSourceConfigTest {
+
+    @Test
+    void testPoolSizeFollowsCoresAndRequestThreads() {
+        assertEquals(4, DataSourceConfig.poolSize(1, 200));
+        assertEquals(9, DataSourceConfig.poolSize(4, 200));
+        assertEquals(6, DataSourceConfig.poolSize(8, 6));
+        assertEquals(33, DataSourceConfig.poolSize(16, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void testReplicaPoolIsReadOnly() throws Exception {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl("jdbc:h2:mem:primary");
+        properties.afterPropertiesSet();
+        DataSourceConfig config = new DataSourceConfig(2, 200, false);
+
+        try (HikariDataSource primary = config.primaryDataSource(properties);
+             HikariDataSource replica = config.replicaDataSource(properties, "jdbc:h2:mem:replica", "sa", "")) {
+            assertEquals(DataSourceConfig.PRIMARY_POOL, primary.getPoolName());
+            assertEquals(DataSourceConfig.REPLICA_POOL, replica.getPoolName());
+            assertEquals("jdbc:h2:mem:replica", replica.getJdbcUrl());
+            assertEquals(5, replica.getMaximumPoolSize());
+            assertTrue(replica.isReadOnly());
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.NamingConvention;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LegacyStatsdNameMapperTest {
+
+    private final LegacyStatsdNameMapper nameMapper = new LegacyStatsdNameMapper();
+
+    @Test
+    void testEndpointTimingsKeepLegacyNames() {
+        assertEquals("csye6225.endpoint.user.get.time",
+                map("http.server.requests", Tags.of("method", "GET", "uri", "/v1/user/self", "outcome", "SUCCESS", "status", "200")));
+        assertEquals("csye6225.endpoint.user.pic.upload.time",
+                map("http.server.requests", Tags.of("method", "POST", "uri", "/v1/user/self/pic", "outcome", "SUCCESS", "status", "201")));
+    }
+
+    @Test
+    void testFailedRequestsCarryTheirOutcome() {
+        assertEquals("csye6225.endpoint.user.get.client_error.time",
+                map("http.server.requests", Tags.of("method", "GET", "uri", "/v1/user/self", "outcome", "CLIENT_ERROR", "status", "401")));
+        assertEquals("csye6225.endpoint.other.server_error.time",
+                map("http.server.requests", Tags.of("method", "GET", "uri", "/unknown", "outcome", "SERVER_ERROR", "status", "500")));
+    }
+
+    @Test
+    void testOtherMetersAppendTagValues() {
+        assertEquals("csye6225.auth.cache.hit", map("auth.cache", Tags.of("result", "hit", "statistic", "count")));
+        assertEquals("csye6225.outbox.verification.depth", map("outbox.verification.depth", Tags.of("statistic", "value")));
+    }
+
+    private String map(String name, Tags tags) {
+        return nameMapper.toHierarchicalName(new Meter.Id(name, tags, null, null, Meter.Type.TIMER), NamingConvention.dot);
+    }
+}
@@ -0,0 +1,65 @@
+package healthwebapp.example.restapi.config;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class PasswordUpgradeTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void testCalibrationStaysWithinBounds() {
+        assertEquals(4, BCryptCostCalibrator.calibrate(Duration.ZERO, 4, 6));
+        assertEquals(6, BCryptCostCalibrator.calibrate(Duration.ofHours(1), 4, 6));
+    }
+
+    @Test
+    void testLegacyHashIsUpgradedAfterLogin() throws Exception {
+        String email = "legacy-" + UUID.randomUUID() + "@example.com";
+        User user = new User();
+        user.setEmail(email);
+        // As stored before hashes carried an algorithm prefix, at a cost below the floor
+        user.setPassword(new BCryptPasswordEncoder(4).encode("password123"));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+
+        String basic = "Basic " + Base64.getEncoder().encodeToString((email + ":password123").getBytes());
+        mockMvc.perform(get("/v1/user/self").header("Authorization", basic)).andExpect(status().isOk());
+
+        // The rehash runs after the response, on the hashing pool
+        String stored = userRepository.findByEmail(email).orElseThrow().getPassword();
+        for (int i = 0; i < 100 && !stored.startsWith("{bcrypt}"); i++) {
+            Thread.sleep(50);
+            stored = userRepository.findByEmail(email).orElseThrow().getPassword();
+        }
+        assertTrue(stored.startsWith("{bcrypt}$2a$"), stored);
+        assertTrue(Integer.parseInt(stored.substring("{bcrypt}$2a$".length(), "{bcrypt}$2a$".length() + 2)) >= 10, stored);
+
+        mockMvc.perform(get("/v1/user/self").header("Authorization", basic)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,85 @@
+package healthwebapp.example.restapi.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class QueryExecutionMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final QueryExecutionMetrics listener = new QueryExecutionMetrics(meterRegistry, 200, 0);
+
+    interface SampleRepository {
+        void findByEmail(String email);
+    }
+
+    @Test
+    void testStatementsAreTimedPerRepositoryMethod() {
+        ProxyFactory proxyFactory = new ProxyFactory((SampleRepository) email ->
+                listener.afterQuery(execution(5), List.of(query("select u.id from users u where u.email=?", email))));
+        proxyFactory.addAdvice(new RepositoryOrigin(SampleRepository.class));
+        ((SampleRepository) proxyFactory.getProxy()).findByEmail("jane.doe@example.com");
+
+        listener.afterQuery(execution(5), List.of(query("insert into flyway_schema_history values (?)", "x")));
+
+        assertEquals(1, meterRegistry.get("db.query")
+                .tags("origin", "SampleRepository.findByEmail", "type", "select", "outcome", "success")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("db.query")
+                .tags("origin", RepositoryOrigin.NONE, "type", "insert")
+                .timer().count());
+    }
+
+    @Test
+    void testBindValuesAreRedacted() {
+        String types = QueryExecutionMetrics.parameterTypes(
+                List.of(query("update users set password=? where id=?", "$2a$10$secret", 42L)));
+
+        assertEquals("[String,Long]", types);
+        assertFalse(types.contains("secret"));
+    }
+
+    @Test
+    void testStatementTypeComesFromLeadingKeyword() {
+        assertEquals("select", QueryExecutionMetrics.statementType("  SELECT 1"));
+        assertEquals("delete", QueryExecutionMetrics.statementType("delete from verification_tokens where id=?"));
+        assertEquals("other", QueryExecutionMetrics.statementType("create index ix on t (c)"));
+    }
+
+    private static ExecutionInfo execution(long elapsedMs) {
+        ExecutionInfo execution = new ExecutionInfo();
+        execution.setDataSourceName("primaryDataSource");
+        execution.setElapsedTime(elapsedMs);
+        execution.setSuccess(true);
+        return execution;
+    }
+
+    private static QueryInfo query(String sql, Object... params) {
+        QueryInfo query = new QueryInfo(sql);
+        List<ParameterSetOperation> parameters = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            parameters.add(new ParameterSetOperation(setObject(), new Object[]{i + 1, params[i]}));
+        }
+        query.getParametersList().add(parameters);
+        return query;
+    }
+
+    private static Method setObject() {
+        try {
+            return PreparedStatement.class.getMethod("setObject", int.class, Object.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package healthwebapp.example.restapi.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.service.AuthTokenService;
+import healthwebapp.example.restapi.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthTokenControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AuthTokenService authTokenService;
+
+    // deleteAll bypasses the profile cache, so every test gets a user of its own
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        email = "bearer-" + UUID.randomUUID() + "@example.com";
+        saveVerifiedUser("password123");
+    }
+
+    @Test
+    void testAccessTokenAuthenticatesUntilRevoked() throws Exception {
+        JsonNode tokens = login();
+        String accessToken = tokens.get("access_token").asText();
+        String refreshToken = tokens.get("refresh_token").asText();
+
+        mockMvc.perform(get("/v1/user/self").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value(email));
+        // Refresh tokens are not access tokens, and bearer tokens cannot mint new ones
+        mockMvc.perform(get("/v1/user/self").header("Authorization", "Bearer " + refreshToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/v1/user/token").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(post("/v1/user/token/revoke").header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/v1/user/self").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/v1/user/token/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testPasswordChangeEndsRefreshTokens() throws Exception {
+        String refreshToken = login().get("refresh_token").asText();
+
+        String refreshed = mockMvc.perform(post("/v1/user/token/refresh")
+                        .contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refresh_token").value(refreshToken))
+                .andReturn().getResponse().getContentAsString();
+        String accessToken = objectMapper.readTree(refreshed).get("access_token").asText();
+
+        MvcResult changed = mockMvc.perform(put("/v1/user/self").header("Authorization", "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON).content("{\"password\":\"changed456\"}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(changed)).andExpect(status().isOk());
+
+        mockMvc.perform(post("/v1/user/token/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testTokensDieWithTheirAccount() throws Exception {
+        JsonNode tokens = login();
+        String accessToken = tokens.get("access_token").asText();
+        String refreshToken = tokens.get("refresh_token").asText();
+
+        // Someone else registers the email of the deleted account; its password_updated is still null
+        userService.deleteUser(userService.findByEmail(email).orElseThrow());
+        saveVerifiedUser("someone-else");
+
+        mockMvc.perform(get("/v1/user/self").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/v1/user/token/refresh").contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testRefreshRecomputesRoles() throws Exception {
+        // Issued while the account was an admin; it is not in admin.emails any more
+        String refreshToken = authTokenService.issue(userService.findProfileByEmail(email).orElseThrow(),
+                List.of("ADMIN")).refreshToken();
+
+        String refreshed = mockMvc.perform(post("/v1/user/token/refresh")
+                        .contentType(MediaType.APPLICATION_JSON).content(refreshBody(refreshToken)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String accessToken = objectMapper.readTree(refreshed).get("access_token").asText();
+
+        mockMvc.perform(get("/v1/user/export").header("Authorization", "Bearer " + accessToken))
+                .andExpect(status().isForbidden());
+    }
+
+    private void saveVerifiedUser(String password) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+    }
+
+    private JsonNode login() throws Exception {
+        String body = mockMvc.perform(post("/v1/user/token")
+                        .header("Authorization", "Basic " + Base64.getEncoder().encodeToString((email + ":password123").getBytes())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token_type").value("Bearer"))
+                .andExpect(jsonPath("$.expires_in").value(900))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static String refreshBody(String refreshToken) {
+        return "{\"refresh_token\":\"" + refreshToken + "\"}";
+    }
+}
@@ -0,0 +1,156 @@
+package healthwebapp.example.restapi.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The HTTP contract of /v1/user, checked over a real socket with a plain HTTP client, so the same
+ * cases hold for any implementation of the API. Subclasses start the server and create verified
+ * users, which the API itself only does through the emailed link.
+ */
+abstract class UserApiContract {
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    protected abstract String baseUrl();
+
+    protected abstract void createVerifiedUser(String email, String password);
+
+    @Test
+    void signupCreatesOnceAndRejectsDuplicates() throws Exception {
+        String email = newEmail();
+        String body = "{\"email\":\"" + email + "\",\"password\":\"password123\",\"firstName\":\"Jane\",\"lastName\":\"Doe\"}";
+
+        HttpResponse<String> created = send(json("POST", "/v1/user", body));
+        assertEquals(201, created.statusCode());
+        assertEquals("", created.body());
+
+        HttpResponse<String> duplicate = send(json("POST", "/v1/user", body));
+        assertEquals(400, duplicate.statusCode());
+        assertEquals("Email already in use", duplicate.body());
+
+        // New accounts stay unverified until the emailed link is followed
+        assertEquals(403, send(request("GET", "/v1/user/self").header("Authorization", basic(email, "password123"))).statusCode());
+    }
+
+    @Test
+    void selfRequiresCredentials() throws Exception {
+        String email = newEmail();
+        createVerifiedUser(email, "password123");
+
+        assertEquals(401, send(request("GET", "/v1/user/self")).statusCode());
+        assertEquals(401, send(request("GET", "/v1/user/self").header("Authorization", basic(email, "wrong-password"))).statusCode());
+    }
+
+    @Test
+    void selfReturnsTheProfileWithoutThePassword() throws Exception {
+        String email = newEmail();
+        createVerifiedUser(email, "password123");
+
+        HttpResponse<String> response = send(request("GET", "/v1/user/self").header("Authorization", basic(email, "password123")));
+        assertEquals(200, response.statusCode());
+        assertTrue(response.headers().firstValue("ETag").isPresent());
+        assertTrue(response.headers().firstValue("Cache-Control").orElse("").contains("private"));
+
+        JsonNode user = objectMapper.readTree(response.body());
+        assertEquals(email, user.get("email").asText());
+        assertEquals("Jane", user.get("firstName").asText());
+        assertEquals("Doe", user.get("lastName").asText());
+        assertEquals(user.get("id").asText(), user.get("user_id").asText());
+        assertTrue(user.get("variants").isArray());
+        assertFalse(user.has("password"));
+    }
+
+    @Test
+    void updateChangesOnlyTheSuppliedFields() throws Exception {
+        String email = newEmail();
+        createVerifiedUser(email, "password123");
+
+        HttpResponse<String> response = send(json("PUT", "/v1/user/self", "{\"firstName\":\"Janet\"}")
+                .header("Authorization", basic(email, "password123")));
+        assertEquals(200, response.statusCode());
+        JsonNode user = objectMapper.readTree(response.body());
+        assertEquals("Janet", user.get("firstName").asText());
+        assertEquals("Doe", user.get("lastName").asText());
+
+        // A new password replaces the old one right away
+        assertEquals(200, send(json("PUT", "/v1/user/self", "{\"password\":\"changed456\"}")
+                .header("Authorization", basic(email, "password123"))).statusCode());
+        assertEquals(401, send(request("GET", "/v1/user/self").header("Authorization", basic(email, "password123"))).statusCode());
+        assertEquals(200, send(request("GET", "/v1/user/self").header("Authorization", basic(email, "changed456"))).statusCode());
+    }
+
+    @Test
+    void errorsKeepTheirStatusAndMessage() throws Exception {
+        String email = newEmail();
+        createVerifiedUser(email, "password123");
+
+        // The link is opened in a browser, which asks for the Basic credentials
+        assertEquals(401, send(request("GET", "/v1/user/verify?token=not-a-token")).statusCode());
+        HttpResponse<String> verify = send(request("GET", "/v1/user/verify?token=not-a-token")
+                .header("Authorization", basic(email, "password123")));
+        assertEquals(400, verify.statusCode());
+        assertEquals("Invalid or expired verification token.", verify.body());
+
+        HttpResponse<String> delete = send(request("DELETE", "/v1/user/self?email=" + newEmail()));
+        assertEquals(404, delete.statusCode());
+        assertEquals("User not found", delete.body());
+
+        assertEquals(405, send(request("PUT", "/v1/user/self/pic").header("Authorization", basic(email, "password123"))).statusCode());
+    }
+
+    @Test
+    void pictureThatIsNotAnImageIsRejected() throws Exception {
+        String email = newEmail();
+        createVerifiedUser(email, "password123");
+
+        // Named like a PNG; the bytes decide
+        String boundary = "contract-" + UUID.randomUUID();
+        String body = "--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"profilePic\"; filename=\"me.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n"
+                + "GIF89a not a png\r\n"
+                + "--" + boundary + "--\r\n";
+        HttpResponse<String> upload = send(HttpRequest.newBuilder(URI.create(baseUrl() + "/v1/user/self/pic"))
+                .header("Authorization", basic(email, "password123"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+        assertEquals(400, upload.statusCode());
+    }
+
+    private HttpRequest.Builder request(String method, String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl() + path)).method(method, HttpRequest.BodyPublishers.noBody());
+    }
+
+    private HttpRequest.Builder json(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl() + path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String basic(String email, String password) {
+        return "Basic " + Base64.getEncoder().encodeToString((email + ":" + password).getBytes());
+    }
+
+    private static String newEmail() {
+        return "contract-" + UUID.randomUUID() + "@example.com";
+    }
+}
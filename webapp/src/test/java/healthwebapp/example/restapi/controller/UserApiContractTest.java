@@ -0,0 +1,42 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+// The contract against the servlet stack (ReactiveUserApiContractTest, in the -Preactive build, runs it on
+// WebFlux); signups from the test client are not rate limited
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000", "admission.enabled=false"})
+@ActiveProfiles("test")
+class UserApiContractTest extends UserApiContract {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Override
+    protected String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    @Override
+    protected void createVerifiedUser(String email, String password) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode(password));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+    }
+}
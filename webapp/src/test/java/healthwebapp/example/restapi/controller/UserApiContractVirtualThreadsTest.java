@@ -0,0 +1,61 @@
+package healthwebapp.example.restapi.controller;
+
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The same contract with requests, scheduled jobs and SDK callbacks on virtual threads (Java 21+)
+@EnabledForJreRange(min = JRE.JAVA_21)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000", "admission.enabled=false",
+                "spring.threads.virtual.enabled=true"})
+@ActiveProfiles("test")
+class UserApiContractVirtualThreadsTest extends UserApiContractTest {
+
+    @Test
+    void requestsAreHandledOnVirtualThreads() throws Exception {
+        HttpResponse<Void> unauthenticated = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create(baseUrl() + "/v1/user/self")).build(),
+                HttpResponse.BodyHandlers.discarding());
+        assertEquals(401, unauthenticated.statusCode());
+
+        assertFalse(HandlerThreads.SEEN.isEmpty());
+        // Thread.isVirtual() is Java 21 API and the tests compile for 17; VirtualThread#toString names the class
+        HandlerThreads.SEEN.forEach(thread -> assertTrue(thread.startsWith("VirtualThread["), thread));
+    }
+
+    // Notes the thread every request is handled on, ahead of the security filters
+    @TestConfiguration
+    static class HandlerThreads {
+
+        static final Queue<String> SEEN = new ConcurrentLinkedQueue<>();
+
+        @Bean
+        FilterRegistrationBean<Filter> handlerThreadRecorder() {
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+                SEEN.add(Thread.currentThread().toString());
+                chain.doFilter(request, response);
+            });
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+            return registration;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.OutboxMessageRepository;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.repository.VerificationTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "admin.emails=admin@example.com",
+        "user.import.batch-size=2", "outbox.poll-interval-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserBulkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        tokenRepository.deleteAll();
+        userRepository.deleteAll();
+        saveUser("admin@example.com");
+        saveUser("member@example.com");
+    }
+
+    @Test
+    void testImportWritesValidRowsAndReportsTheRest() throws Exception {
+        String body = String.join("\n",
+                "{\"email\":\"a@example.com\",\"password\":\"pw-a\",\"firstName\":\"A\",\"lastName\":\"One\"}",
+                "{\"email\":\"not-an-email\",\"password\":\"pw\",\"firstName\":\"B\",\"lastName\":\"Two\"}",
+                "",
+                "{\"email\":\"member@example.com\",\"password\":\"pw\",\"firstName\":\"C\",\"lastName\":\"Three\"}",
+                "{\"email\":\"d@example.com\",\"password\":\"pw-d\",\"firstName\":\"D\",\"lastName\":\"Four\"}",
+                "{\"email\":\"e@example.com\",\"password\":\"pw-e\",\"firstName\":\"E\",\"lastName\":\"Five\"}",
+                "{\"email\":\"a@example.com\",\"password\":\"pw\",\"firstName\":\"A\",\"lastName\":\"Again\"}",
+                "{broken");
+
+        mockMvc.perform(post("/v1/user/import")
+                        .header("Authorization", basic("admin@example.com"))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andExpect(jsonPath("$.errors[0].line").value(2))
+                .andExpect(jsonPath("$.errors[1].line").value(4))
+                .andExpect(jsonPath("$.errors[1].error").value("Email already in use"))
+                .andExpect(jsonPath("$.errors[2].line").value(7))
+                .andExpect(jsonPath("$.errors[3].line").value(8));
+
+        User imported = userRepository.findByEmail("d@example.com").orElseThrow();
+        assertTrue(passwordEncoder.matches("pw-d", imported.getPassword()));
+        assertFalse(imported.isVerified());
+        assertEquals(3, tokenRepository.count());
+        assertEquals(3, outboxRepository.count());
+    }
+
+    @Test
+    void testExportStreamsUsersWithoutPasswords() throws Exception {
+        MvcResult started = mockMvc.perform(get("/v1/user/export").header("Authorization", basic("admin@example.com")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.strip().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"email\":\"admin@example.com\""));
+        assertTrue(lines[1].contains("\"email\":\"member@example.com\""));
+        assertFalse(body.contains("password"));
+    }
+
+    @Test
+    void testBulkEndpointsRequireAdmin() throws Exception {
+        mockMvc.perform(get("/v1/user/export").header("Authorization", basic("member@example.com")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/v1/user/import").contentType(MediaType.APPLICATION_NDJSON).content("{}"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private void saveUser(String email) {
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode("password123"));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+    }
+
+    private static String basic(String email) {
+        return "Basic " + Base64.getEncoder().encodeToString((email + ":password123").getBytes());
+    }
+}
@@ -0,0 +1,114 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserControllerConditionalTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // deleteAll bypasses the profile cache, so every test gets a user of its own
+    private String email;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        email = "poller-" + UUID.randomUUID() + "@example.com";
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword(passwordEncoder.encode("password123"));
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setVerified(true);
+        userRepository.save(user);
+    }
+
+    @Test
+    void testUnchangedUserIsNotModified() throws Exception {
+        String etag = currentETag();
+
+        mockMvc.perform(get("/v1/user/self").header("Authorization", basic()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andExpect(content().string(""));
+
+        // Any write moves the version on, so the old ETag no longer matches
+        mockMvc.perform(asyncDispatch(update(null, "{\"firstName\":\"Janet\"}")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/v1/user/self").header("Authorization", basic()).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Janet"));
+        assertNotEquals(etag, currentETag());
+    }
+
+    @Test
+    void testUpdateWithStaleIfMatchIsRejected() throws Exception {
+        String etag = currentETag();
+
+        String updated = mockMvc.perform(asyncDispatch(update(etag, "{\"firstName\":\"Janet\"}")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(currentETag(), updated);
+
+        mockMvc.perform(asyncDispatch(update(etag, "{\"firstName\":\"Jo\"}")))
+                .andExpect(status().isPreconditionFailed());
+        assertEquals("Janet", userRepository.findByEmail(email).orElseThrow().getFirstName());
+    }
+
+    // PUT /self completes asynchronously, once any new password is hashed
+    private MvcResult update(String ifMatch, String body) throws Exception {
+        MockHttpServletRequestBuilder builder = put("/v1/user/self").header("Authorization", basic())
+                .contentType(MediaType.APPLICATION_JSON).content(body);
+        if (ifMatch != null) {
+            builder.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        return mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+    }
+
+    private String currentETag() throws Exception {
+        return mockMvc.perform(get("/v1/user/self").header("Authorization", basic()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private String basic() {
+        return "Basic " + Base64.getEncoder().encodeToString((email + ":password123").getBytes());
+    }
+}
@@ -0,0 +1,67 @@
+package healthwebapp.example.restapi.controller;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.repository.VerificationTokenRepository;
+import healthwebapp.example.restapi.service.VerificationTokenService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserControllerDeleteTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private VerificationTokenService verificationTokenService;
+
+    @Autowired
+    private VerificationTokenRepository tokenRepository;
+
+    // There is no S3 to reach here, so deleting the picture objects fails; the account must still go
+    @Test
+    void testUserAndTokensAreDeletedEvenWhenPictureCleanupFails() throws Exception {
+        String email = "leaving-" + UUID.randomUUID() + "@example.com";
+        User user = new User();
+        user.setEmail(email);
+        user.setPassword("{noop}unused");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user.setPfpKey("users/" + UUID.randomUUID() + "/profile-picture-1.png");
+        user.setProfilePicUrl("https://test-bucket.s3.amazonaws.com/" + user.getPfpKey());
+        Long id = userRepository.save(user).getId();
+        verificationTokenService.issue(id, LocalDateTime.now());
+
+        MvcResult result = mockMvc.perform(delete("/v1/user/self").param("email", email))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("User deleted successfully"));
+
+        assertFalse(userRepository.existsById(id));
+        assertTrue(tokenRepository.findAll().stream().noneMatch(token -> id.equals(token.getUserId())));
+    }
+}
@@ -0,0 +1,89 @@
+package healthwebapp.example.restapi.repository;
+
+import healthwebapp.example.restapi.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserRepositoryTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll();
+        user = new User();
+        user.setEmail("jane.doe@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void testUpdateProfileOnlyWritesSuppliedFields() {
+        userRepository.updateProfile(user.getId(), null, "Smith", null, LocalDateTime.now());
+        userRepository.updateProfile(user.getId(), "Janet", null, null, LocalDateTime.now());
+
+        User updated = userRepository.findById(user.getId()).orElseThrow();
+        assertEquals("Janet", updated.getFirstName());
+        assertEquals("Smith", updated.getLastName());
+        assertEquals("secret", updated.getPassword());
+        assertEquals(0, userRepository.updateProfile(-1L, "Nobody", null, null, LocalDateTime.now()));
+    }
+
+    @Test
+    void testClearProfilePictureKeepsNewerUpload() {
+        userRepository.replaceProfilePicture(user.getId(), null, "old-key", null, "https://bucket/old-key", LocalDateTime.now());
+        userRepository.replaceProfilePicture(user.getId(), "old-key", "new-key", null, "https://bucket/new-key", LocalDateTime.now());
+
+        assertEquals(0, userRepository.clearProfilePicture(user.getId(), "old-key", LocalDateTime.now()));
+        assertEquals("new-key", userRepository.findById(user.getId()).orElseThrow().getPfpKey());
+
+        assertEquals(1, userRepository.clearProfilePicture(user.getId(), "new-key", LocalDateTime.now()));
+        assertNull(userRepository.findById(user.getId()).orElseThrow().getPfpKey());
+    }
+
+    @Test
+    void testReplaceProfilePictureOnlyReplacesThePreviousKey() {
+        assertEquals(1, userRepository.replaceProfilePicture(user.getId(), null, "first-key", null,
+                "https://bucket/first-key", LocalDateTime.now()));
+        // A second upload that still thinks there is no picture, or the wrong one, changes nothing
+        assertEquals(0, userRepository.replaceProfilePicture(user.getId(), null, "second-key", null,
+                "https://bucket/second-key", LocalDateTime.now()));
+        assertEquals(0, userRepository.replaceProfilePicture(user.getId(), "other-key", "second-key", null,
+                "https://bucket/second-key", LocalDateTime.now()));
+        assertEquals("first-key", userRepository.findById(user.getId()).orElseThrow().getPfpKey());
+
+        assertEquals(1, userRepository.replaceProfilePicture(user.getId(), "first-key", "second-key", null,
+                "https://bucket/second-key", LocalDateTime.now()));
+        assertEquals("second-key", userRepository.findById(user.getId()).orElseThrow().getPfpKey());
+    }
+
+    @Test
+    void testStaleEntityCannotOverwriteTargetedUpdate() {
+        User stale = userRepository.findById(user.getId()).orElseThrow();
+        userRepository.updateProfile(user.getId(), "Janet", null, null, LocalDateTime.now());
+
+        stale.setLastName("Overwritten");
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> userRepository.save(stale));
+        assertEquals("Janet", userRepository.findById(user.getId()).orElseThrow().getFirstName());
+    }
+}
@@ -0,0 +1,52 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CredentialCache credentialCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        credentialCache = new CredentialCache(meterRegistry, 100, 60);
+    }
+
+    @Test
+    void testHitAfterSuccessfulVerification() {
+        credentialCache.put("golu.doe@example.com", "password123", "$2a$10$hash");
+
+        assertTrue(credentialCache.matches("golu.doe@example.com", "password123", "$2a$10$hash"));
+        assertEquals(1.0, meterRegistry.counter("auth.cache", "result", "hit").count());
+    }
+
+    @Test
+    void testMissForWrongPassword() {
+        credentialCache.put("golu.doe@example.com", "password123", "$2a$10$hash");
+
+        assertFalse(credentialCache.matches("golu.doe@example.com", "wrong", "$2a$10$hash"));
+        assertEquals(1.0, meterRegistry.counter("auth.cache", "result", "miss").count());
+    }
+
+    @Test
+    void testMissWhenStoredHashChanged() {
+        credentialCache.put("golu.doe@example.com", "password123", "$2a$10$hash");
+
+        assertFalse(credentialCache.matches("golu.doe@example.com", "password123", "$2a$10$otherHash"));
+    }
+
+    @Test
+    void testMissAfterInvalidate() {
+        credentialCache.put("golu.doe@example.com", "password123", "$2a$10$hash");
+        credentialCache.invalidate("golu.doe@example.com");
+
+        assertFalse(credentialCache.matches("golu.doe@example.com", "password123", "$2a$10$hash"));
+    }
+}
@@ -0,0 +1,223 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomS3ServiceTest {
+
+    private static final int MB = 1024 * 1024;
+
+    private final StubS3 s3Client = new StubS3();
+    private final ProfilePictureProcessor processor = new ProfilePictureProcessor(
+            List.of(128, 256, 512), List.of(), 1, 4, 40_000_000, new SimpleMeterRegistry());
+
+    // Signs for a local S3 stand-in such as MinIO; presigning makes no calls
+    private final S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("minio", "minio-secret")))
+            .endpointOverride(URI.create("http://localhost:9000"))
+            .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(true).build())
+            .build();
+
+    @Test
+    void testSmallPngIsUploadedWithVariants() throws Exception {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        byte[] image = encode(new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB), "png");
+        UUID userId = UUID.randomUUID();
+
+        CustomS3Service.StoredImage stored = s3Service.uploadFile(new ByteArrayInputStream(image), userId).join();
+
+        String key = stored.key();
+        assertTrue(key.startsWith("users/" + userId + "/profile-picture-"));
+        assertTrue(key.endsWith(".png"));
+        assertEquals("image/png", s3Client.contentTypes.get(key));
+        assertArrayEquals(image, s3Client.objects.get(key));
+
+        assertEquals(List.of("512.jpg", "256.jpg", "128.jpg"), stored.variants());
+        String variantKey = CustomS3Service.variantKey(key, "256.jpg");
+        assertEquals(key.substring(0, key.length() - 4) + "-256.jpg", variantKey);
+        assertEquals("image/jpeg", s3Client.contentTypes.get(variantKey));
+        BufferedImage variant = ImageIO.read(new ByteArrayInputStream(s3Client.objects.get(variantKey)));
+        assertEquals(256, variant.getWidth());
+        assertEquals(128, variant.getHeight());
+
+        s3Service.deleteImage(key, stored.variants()).join();
+        assertTrue(s3Client.objects.isEmpty());
+    }
+
+    @Test
+    void testJpegMetadataIsStrippedAndOrientationApplied() throws Exception {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        byte[] plain = encode(new BufferedImage(400, 200, BufferedImage.TYPE_INT_RGB), "jpeg");
+        byte[] image = withExif(plain, 6, "GPS 51.5N 0.1W");
+
+        CustomS3Service.StoredImage stored = s3Service.uploadFile(new ByteArrayInputStream(image), UUID.randomUUID()).join();
+
+        assertTrue(stored.key().endsWith(".jpg"));
+        byte[] original = s3Client.objects.get(stored.key());
+        assertFalse(new String(original, StandardCharsets.ISO_8859_1).contains("GPS"));
+        assertEquals(6, original[2 + 29]); // orientation value in the minimal EXIF segment
+        assertEquals(200, ImageIO.read(new ByteArrayInputStream(original)).getHeight());
+
+        // Rotated a quarter turn, so the variant is portrait
+        BufferedImage variant = ImageIO.read(new ByteArrayInputStream(
+                s3Client.objects.get(CustomS3Service.variantKey(stored.key(), "128.jpg"))));
+        assertEquals(64, variant.getWidth());
+        assertEquals(128, variant.getHeight());
+    }
+
+    @Test
+    void testContentTypeIsSniffedNotTrusted() {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        byte[] notAnImage = "GIF89a...".getBytes();
+
+        assertThrows(IllegalArgumentException.class,
+                () -> s3Service.uploadFile(new ByteArrayInputStream(notAnImage), UUID.randomUUID()));
+        assertTrue(s3Client.objects.isEmpty());
+    }
+
+    @Test
+    void testOversizedUploadIsRejected() {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 1024, 5 * MB, 2, 100, 300);
+        byte[] image = image(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, 4096);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> s3Service.uploadFile(new ByteArrayInputStream(image), UUID.randomUUID()));
+    }
+
+    @Test
+    void testLargeUploadUsesMultipartParts() throws Exception {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 20 * MB, 5 * MB, 3, 1000, 300);
+        byte[] image = image(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}, 12 * MB);
+
+        String key = s3Service.uploadFile(new ByteArrayInputStream(image), UUID.randomUUID()).join().key();
+
+        assertEquals(List.of(5 * MB, 5 * MB, 2 * MB), s3Client.partSizes);
+        assertArrayEquals(image, s3Client.objects.get(key));
+        assertEquals("image/jpeg", s3Client.contentTypes.get(key));
+    }
+
+    @Test
+    void testUploadFillingExactlyOneBufferIsStoredWithVariants() throws Exception {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 20 * MB, 5 * MB, 2, 100, 300);
+        // Trailing bytes after IEND pad the picture to the buffer size without changing what decodes
+        byte[] image = Arrays.copyOf(encode(new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB), "png"), 5 * MB);
+
+        CustomS3Service.StoredImage stored = s3Service.uploadFile(new ByteArrayInputStream(image), UUID.randomUUID()).join();
+
+        assertTrue(s3Client.partSizes.isEmpty());
+        assertEquals(List.of("512.jpg", "256.jpg", "128.jpg"), stored.variants());
+    }
+
+    @Test
+    void testPresignedUploadIsLimitedToUserPrefixTypeAndSize() {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        UUID userId = UUID.randomUUID();
+
+        CustomS3Service.PresignedUpload upload = s3Service.presignUpload("image/jpeg", 2048, userId);
+
+        assertTrue(CustomS3Service.isUploadKey(upload.key(), userId));
+        assertTrue(upload.url().startsWith("http://localhost:9000/test-bucket/" + upload.key() + "?"));
+        String signedHeaders = upload.url().replaceAll(".*X-Amz-SignedHeaders=([^&]*).*", "$1");
+        assertTrue(signedHeaders.contains("content-length"));
+        assertTrue(signedHeaders.contains("content-type"));
+        assertEquals(Map.of("content-type", "image/jpeg", "x-amz-tagging", "upload=pending"), upload.headers());
+
+        assertThrows(IllegalArgumentException.class, () -> s3Service.presignUpload("image/gif", 2048, userId));
+        assertThrows(IllegalArgumentException.class, () -> s3Service.presignUpload("image/png", 6 * MB, userId));
+        assertFalse(CustomS3Service.isUploadKey(upload.key(), UUID.randomUUID()));
+        assertFalse(CustomS3Service.isUploadKey(CustomS3Service.variantKey(upload.key(), "256.jpg"), userId));
+    }
+
+    @Test
+    void testConfirmedUploadIsProcessedInPlace() throws Exception {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        UUID userId = UUID.randomUUID();
+        String key = s3Service.presignUpload("image/jpeg", 1, userId).key();
+        s3Client.objects.put(key, withExif(encode(new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB), "jpeg"), 1, "GPS"));
+
+        CustomS3Service.StoredImage stored = s3Service.confirmUpload(key, userId).join();
+
+        assertEquals(key, stored.key());
+        assertEquals(List.of("512.jpg", "256.jpg", "128.jpg"), stored.variants());
+        assertFalse(new String(s3Client.objects.get(key), StandardCharsets.ISO_8859_1).contains("GPS"));
+        assertEquals("image/jpeg", s3Client.contentTypes.get(key));
+    }
+
+    @Test
+    void testConfirmedUploadThatIsNotAnImageIsDeleted() {
+        CustomS3Service s3Service = new CustomS3Service(s3Client, presigner, processor, "test-bucket", 5 * MB, 5 * MB, 2, 100, 300);
+        UUID userId = UUID.randomUUID();
+        String key = s3Service.presignUpload("image/png", 1, userId).key();
+        s3Client.objects.put(key, "<html>not a picture</html>".getBytes());
+
+        CompletionException error = assertThrows(CompletionException.class, () -> s3Service.confirmUpload(key, userId).join());
+
+        assertInstanceOf(IllegalArgumentException.class, error.getCause());
+        assertTrue(s3Client.objects.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> s3Service.confirmUpload("users/" + userId + "/other.png", userId));
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    // Inserts a little-endian EXIF segment after SOI: IFD0 holds the orientation and an ASCII tag
+    private static byte[] withExif(byte[] jpeg, int orientation, String text) {
+        byte[] ascii = (text + "\0").getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer tiff = ByteBuffer.allocate(8 + 2 + 2 * 12 + 4 + ascii.length).order(ByteOrder.LITTLE_ENDIAN);
+        tiff.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+        tiff.putShort((short) 2);
+        tiff.putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0);
+        tiff.putShort((short) 0x010E).putShort((short) 2).putInt(ascii.length).putInt(8 + 2 + 2 * 12 + 4);
+        tiff.putInt(0);
+        tiff.put(ascii);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        int segmentLength = 2 + 6 + tiff.capacity();
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (segmentLength >> 8), (byte) segmentLength}, 0, 4);
+        out.writeBytes(new byte[]{'E', 'x', 'i', 'f', 0, 0});
+        out.writeBytes(tiff.array());
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static byte[] image(byte[] signature, int size) {
+        byte[] data = new byte[size];
+        System.arraycopy(signature, 0, data, 0, signature.length);
+        for (int i = signature.length; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,39 @@
+package healthwebapp.example.restapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void testAddedEmailsAreAlwaysFound() {
+        EmailBloomFilter filter = EmailBloomFilter.forCapacity(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+        assertEquals(10_000, filter.added());
+    }
+
+    @Test
+    void testFalsePositivesStayNearTheConfiguredRate() {
+        EmailBloomFilter filter = EmailBloomFilter.forCapacity(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@example.org")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives in 100000");
+        assertTrue(filter.expectedFalsePositiveRate() < 0.011);
+        // About 9.6 bits per entry at 1%
+        assertEquals(12_000, filter.sizeInBytes(), 100);
+    }
+}
@@ -0,0 +1,50 @@
+package healthwebapp.example.restapi.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PictureUrlSignerTest {
+
+    private final S3Presigner presigner = S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("key", "secret")))
+            .build();
+
+    @Test
+    void testUrlIsSignedOnceAndReused() {
+        PictureUrlSigner signer = new PictureUrlSigner(presigner, new SimpleMeterRegistry(), "test-bucket", 3600, 900, 100);
+
+        PictureUrlSigner.SignedUrls first = signer.sign("users/u/profile-picture-1.jpg", List.of("users/u/profile-picture-1-256.jpg"));
+
+        assertTrue(first.url().startsWith("https://test-bucket.s3.amazonaws.com/users/u/profile-picture-1.jpg?"));
+        assertTrue(first.url().contains("X-Amz-Expires=3600"));
+        assertTrue(first.variantUrls().get(0).startsWith("https://test-bucket.s3.amazonaws.com/users/u/profile-picture-1-256.jpg?"));
+        assertSame(first, signer.sign("users/u/profile-picture-1.jpg", List.of("users/u/profile-picture-1-256.jpg")));
+        assertNotEquals(first.url(), signer.sign("users/u/profile-picture-2.jpg", List.of()).url());
+    }
+
+    @Test
+    void testResponsesStayFreshUntilMinRemaining() {
+        PictureUrlSigner signer = new PictureUrlSigner(presigner, new SimpleMeterRegistry(), "test-bucket", 3600, 900, 100);
+        Instant now = Instant.now();
+
+        assertEquals(Duration.ofSeconds(2700), signer.freshFor(now.plusSeconds(3600), now));
+        assertEquals(Duration.ZERO, signer.freshFor(now.plusSeconds(600), now));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PictureUrlSigner(presigner, new SimpleMeterRegistry(), "test-bucket", 600, 900, 100));
+    }
+}
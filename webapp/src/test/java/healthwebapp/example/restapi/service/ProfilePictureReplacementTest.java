@@ -0,0 +1,114 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"aws.s3.bucket-name=test-bucket", "outbox.poll-interval-ms=3600000"})
+@ActiveProfiles("test")
+class ProfilePictureReplacementTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StubS3 s3Client;
+
+    private UserProfile user;
+
+    @BeforeEach
+    void setUp() {
+        User saved = new User();
+        saved.setEmail("pictures-" + UUID.randomUUID() + "@example.com");
+        saved.setPassword("secret");
+        saved.setFirstName("Jane");
+        saved.setLastName("Doe");
+        saved.setVerified(true);
+        userRepository.save(saved);
+        user = userService.findProfileByEmail(saved.getEmail()).orElseThrow();
+    }
+
+    @Test
+    void testUploadDeletesThePictureItReplaces() throws Exception {
+        UserProfile first = userService.uploadProfilePicture(new ByteArrayInputStream(png()), user).join();
+        // Uploaded with the snapshot from before the first picture, as a stale cache would hand out
+        UserProfile second = userService.uploadProfilePicture(new ByteArrayInputStream(png()), user).join();
+
+        assertReplaced(first, second);
+    }
+
+    @Test
+    void testConfirmDeletesThePictureItReplaces() throws Exception {
+        UserProfile first = userService.confirmProfilePicture(uploadDirectly(), user).join();
+        UserProfile second = userService.confirmProfilePicture(uploadDirectly(), user).join();
+
+        assertReplaced(first, second);
+    }
+
+    private void assertReplaced(UserProfile first, UserProfile second) {
+        assertNotEquals(first.pfpKey(), second.pfpKey());
+        assertFalse(objectKeys(first).isEmpty());
+        objectKeys(first).forEach(key -> assertFalse(s3Client.objects.containsKey(key), key));
+        objectKeys(second).forEach(key -> assertTrue(s3Client.objects.containsKey(key), key));
+
+        User stored = userRepository.findById(user.id()).orElseThrow();
+        assertEquals(second.pfpKey(), stored.getPfpKey());
+        assertEquals(second.version(), stored.getVersion());
+    }
+
+    // What a client PUTs to a presigned URL, at a key presignUpload would hand out
+    private String uploadDirectly() throws IOException {
+        String key = "users/" + UserService.pictureOwner(user) + "/profile-picture-" + UUID.randomUUID() + ".png";
+        s3Client.objects.put(key, png());
+        return key;
+    }
+
+    private static List<String> objectKeys(UserProfile profile) {
+        List<String> keys = new ArrayList<>();
+        keys.add(profile.pfpKey());
+        UserService.variantNames(profile.pfpVariants())
+                .forEach(variant -> keys.add(CustomS3Service.variantKey(profile.pfpKey(), variant)));
+        return keys;
+    }
+
+    private static byte[] png() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(600, 300, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @TestConfiguration
+    static class InMemoryS3 {
+
+        @Bean
+        @Primary
+        StubS3 stubS3() {
+            return new StubS3();
+        }
+    }
+}
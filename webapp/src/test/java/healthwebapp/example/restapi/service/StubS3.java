@@ -0,0 +1,128 @@
+package healthwebapp.example.restapi.service;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// Local stand-in for S3 that keeps objects in memory; safe to share with the app's SDK callback threads
+class StubS3 implements S3AsyncClient {
+
+    final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    final Map<String, String> contentTypes = new ConcurrentHashMap<>();
+    final List<Integer> partSizes = new CopyOnWriteArrayList<>();
+    private final Map<String, ByteArrayOutputStream> pendingUploads = new ConcurrentHashMap<>();
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+        objects.put(request.key(), drain(body));
+        contentTypes.put(request.key(), request.contentType());
+        return CompletableFuture.completedFuture(PutObjectResponse.builder().eTag("etag").build());
+    }
+
+    @Override
+    public CompletableFuture<CreateMultipartUploadResponse> createMultipartUpload(CreateMultipartUploadRequest request) {
+        pendingUploads.put(request.key(), new ByteArrayOutputStream());
+        contentTypes.put(request.key(), request.contentType());
+        return CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+    }
+
+    @Override
+    public CompletableFuture<UploadPartResponse> uploadPart(UploadPartRequest request, AsyncRequestBody body) {
+        byte[] part = drain(body);
+        partSizes.add(part.length);
+        pendingUploads.get(request.key()).writeBytes(part);
+        return CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("part-" + request.partNumber()).build());
+    }
+
+    @Override
+    public CompletableFuture<CompleteMultipartUploadResponse> completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        objects.put(request.key(), pendingUploads.remove(request.key()).toByteArray());
+        return CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build());
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(Consumer<HeadObjectRequest.Builder> request) {
+        byte[] object = objects.get(HeadObjectRequest.builder().applyMutation(request).build().key());
+        if (object == null) {
+            return CompletableFuture.failedFuture(NoSuchKeyException.builder().statusCode(404).build());
+        }
+        return CompletableFuture.completedFuture(HeadObjectResponse.builder().contentLength((long) object.length).build());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> getObject(Consumer<GetObjectRequest.Builder> request,
+                                              AsyncResponseTransformer<GetObjectResponse, T> transformer) {
+        byte[] object = objects.get(GetObjectRequest.builder().applyMutation(request).build().key());
+        return CompletableFuture.completedFuture((T) ResponseBytes.fromByteArray(GetObjectResponse.builder().build(), object));
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectResponse> deleteObject(DeleteObjectRequest request) {
+        objects.remove(request.key());
+        return CompletableFuture.completedFuture(DeleteObjectResponse.builder().build());
+    }
+
+    @Override
+    public String serviceName() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static byte[] drain(AsyncRequestBody body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                byte[] chunk = new byte[buffer.remaining()];
+                buffer.get(chunk);
+                out.writeBytes(chunk);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throw new IllegalStateException(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.dto.UserProfile;
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProfileCacheTest {
+
+    private UserRepository userRepository;
+    private PlatformTransactionManager transactionManager;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        user = new User();
+        user.setId(1L);
+        user.setEmail("golu.doe@example.com");
+        user.setFirstName("Golu");
+        user.setLastName("Doe");
+        user.setPassword("$2a$10$hash");
+        when(userRepository.findByEmail("golu.doe@example.com")).thenReturn(Optional.of(user));
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void testRepeatedLookupsHitTheCache() {
+        UserProfileCache cache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 60);
+
+        UserProfile first = cache.getByEmail("golu.doe@example.com").orElseThrow();
+        UserProfile second = cache.getByEmail("golu.doe@example.com").orElseThrow();
+
+        assertEquals(first, second);
+        verify(userRepository, times(1)).findByEmail("golu.doe@example.com");
+    }
+
+    @Test
+    void testLoadByEmailAlsoServesLookupById() {
+        UserProfileCache cache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 60);
+
+        cache.getByEmail("golu.doe@example.com");
+
+        assertEquals("Golu", cache.getById(1L).orElseThrow().firstName());
+        verify(userRepository, never()).findById(1L);
+    }
+
+    @Test
+    void testInvalidateForcesReload() {
+        UserProfileCache cache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 60);
+        cache.getByEmail("golu.doe@example.com");
+
+        user.setFirstName("Changed");
+        cache.invalidate(user);
+
+        assertEquals("Changed", cache.getByEmail("golu.doe@example.com").orElseThrow().firstName());
+        verify(userRepository, times(2)).findByEmail("golu.doe@example.com");
+    }
+
+    @Test
+    void testRequestLoadsEachUserOnlyOnce() {
+        // A zero TTL disables the shared cache, leaving only the per-request memo
+        UserProfileCache cache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 0);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        cache.getByEmail("golu.doe@example.com");
+        cache.getByEmail("golu.doe@example.com");
+
+        verify(userRepository, times(1)).findByEmail("golu.doe@example.com");
+    }
+
+    @Test
+    void testMissesAreNotCached() {
+        UserProfileCache cache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 60);
+        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.empty());
+
+        assertFalse(cache.getByEmail("new@example.com").isPresent());
+        when(userRepository.findByEmail("new@example.com")).thenReturn(Optional.of(user));
+        assertTrue(cache.getByEmail("new@example.com").isPresent());
+    }
+}
@@ -0,0 +1,49 @@
+package healthwebapp.example.restapi.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import healthwebapp.example.restapi.dto.UserVerificationPayload;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VerificationMessageEncoderTest {
+
+    private final UserVerificationPayload payload = new UserVerificationPayload(
+            7L, "jane@example.com", "token-123", LocalDateTime.of(2030, 1, 2, 3, 4, 5));
+
+    @Test
+    void testJsonIsTheDefaultFormat() throws Exception {
+        VerificationMessageEncoder encoder = new VerificationMessageEncoder("json");
+
+        JsonNode node = new ObjectMapper().readTree(encoder.encode(payload));
+
+        assertEquals(VerificationMessageEncoder.JSON, encoder.getContentType());
+        assertEquals("jane@example.com", node.get("email").asText());
+        assertEquals("token-123", node.get("verificationToken").asText());
+        assertEquals("2030-01-02T03:04:05", node.get("tokenExpirationTime").asText());
+    }
+
+    @Test
+    void testCborIsBase64Encoded() throws Exception {
+        VerificationMessageEncoder encoder = new VerificationMessageEncoder("cbor");
+
+        byte[] body = Base64.getDecoder().decode(encoder.encode(payload));
+        JsonNode node = new CBORMapper().readTree(body);
+
+        assertEquals(VerificationMessageEncoder.CBOR, encoder.getContentType());
+        assertEquals(7L, node.get("userId").asLong());
+        assertEquals("jane@example.com", node.get("email").asText());
+        assertEquals("token-123", node.get("verificationToken").asText());
+    }
+
+    @Test
+    void testUnknownFormatIsRejected() {
+        assertThrows(IllegalStateException.class, () -> new VerificationMessageEncoder("smile"));
+    }
+}
@@ -0,0 +1,208 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.entity.OutboxMessage;
+import healthwebapp.example.restapi.entity.OutboxMessage.DeliveryStatus;
+import healthwebapp.example.restapi.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import software.amazon.awssdk.services.sns.SnsAsyncClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.MessageAttributeValue;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchResponse;
+import software.amazon.awssdk.services.sns.model.PublishBatchResultEntry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VerificationOutboxDispatcherTest {
+
+    @Autowired
+    private OutboxMessageRepository outboxRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StubSns snsClient;
+    private VerificationOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository.deleteAll();
+        snsClient = new StubSns();
+        dispatcher = new VerificationOutboxDispatcher(snsClient, outboxRepository, new SimpleMeterRegistry(),
+                transactionManager, "arn:aws:sns:us-east-1:123456789012:verify", 3, 20, 1000, 60000, 5000, 10, 2);
+    }
+
+    @Test
+    void testDrainsQueueInBatchesOfTen() {
+        for (int i = 0; i < 25; i++) {
+            outboxRepository.save(OutboxMessage.pending("{\"n\":" + i + "}", LocalDateTime.now().minusSeconds(1)));
+        }
+
+        dispatcher.dispatch();
+
+        assertEquals(List.of(10, 10, 5), snsClient.batchSizes);
+        assertTrue(snsClient.contentTypes.isEmpty());
+        assertEquals(25, outboxRepository.countByStatus(DeliveryStatus.SENT));
+        outboxRepository.findAll().forEach(message -> {
+            assertNotNull(message.getMessageId());
+            assertEquals("", message.getPayload());
+        });
+    }
+
+    @Test
+    void testContentTypeIsSentAsMessageAttribute() {
+        outboxRepository.save(OutboxMessage.pending("o2Vl", VerificationMessageEncoder.CBOR, LocalDateTime.now().minusSeconds(1)));
+
+        dispatcher.dispatch();
+
+        assertEquals(List.of(VerificationMessageEncoder.CBOR), snsClient.contentTypes);
+    }
+
+    @Test
+    void testFailedEntriesAreRetriedWithBackoff() {
+        OutboxMessage ok = outboxRepository.save(OutboxMessage.pending("{}", LocalDateTime.now().minusSeconds(1)));
+        OutboxMessage bad = outboxRepository.save(OutboxMessage.pending("{}", LocalDateTime.now().minusSeconds(1)));
+        snsClient.failingIds.add(bad.getId().toString());
+
+        dispatcher.dispatch();
+
+        assertEquals(DeliveryStatus.SENT, outboxRepository.findById(ok.getId()).orElseThrow().getStatus());
+        OutboxMessage retried = outboxRepository.findById(bad.getId()).orElseThrow();
+        assertEquals(DeliveryStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        assertTrue(retried.getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void testMessageIsMarkedFailedAfterMaxAttempts() {
+        OutboxMessage bad = OutboxMessage.pending("{\"token\":\"secret\"}", LocalDateTime.now().minusSeconds(1));
+        bad.setAttempts(2);
+        bad = outboxRepository.save(bad);
+        snsClient.failingIds.add(bad.getId().toString());
+
+        dispatcher.dispatch();
+
+        OutboxMessage failed = outboxRepository.findById(bad.getId()).orElseThrow();
+        assertEquals(DeliveryStatus.FAILED, failed.getStatus());
+        assertEquals("", failed.getPayload());
+    }
+
+    @Test
+    void testTimedOutBatchIsRetried() {
+        dispatcher = new VerificationOutboxDispatcher(snsClient, outboxRepository, new SimpleMeterRegistry(),
+                transactionManager, "arn:aws:sns:us-east-1:123456789012:verify", 3, 20, 1000, 60000, 100, 10, 2);
+        OutboxMessage message = outboxRepository.save(OutboxMessage.pending("{}", LocalDateTime.now().minusSeconds(1)));
+        snsClient.unanswered = new CompletableFuture<>();
+
+        dispatcher.dispatch();
+
+        assertTrue(snsClient.unanswered.isCancelled());
+        OutboxMessage retried = outboxRepository.findById(message.getId()).orElseThrow();
+        assertEquals(DeliveryStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+        assertEquals("PublishBatch timed out after 100 ms", retried.getLastError());
+    }
+
+    @Test
+    void testFinishedMessagesArePurgedAfterTokenTtl() {
+        LocalDateTime expired = LocalDateTime.now().minusMinutes(11);
+        List<Long> old = new ArrayList<>();
+        for (DeliveryStatus status : List.of(DeliveryStatus.SENT, DeliveryStatus.FAILED, DeliveryStatus.SENT)) {
+            OutboxMessage message = OutboxMessage.pending("", expired);
+            message.setStatus(status);
+            old.add(outboxRepository.save(message).getId());
+        }
+        OutboxMessage stillPending = outboxRepository.save(OutboxMessage.pending("{}", expired));
+        OutboxMessage recent = OutboxMessage.pending("", LocalDateTime.now().minusMinutes(5));
+        recent.setStatus(DeliveryStatus.SENT);
+        recent = outboxRepository.save(recent);
+
+        // Three finished rows take two batches of two
+        dispatcher.purgeFinished();
+
+        old.forEach(id -> assertFalse(outboxRepository.existsById(id)));
+        assertTrue(outboxRepository.existsById(stillPending.getId()));
+        assertTrue(outboxRepository.existsById(recent.getId()));
+    }
+
+    @Test
+    void testBackoffIsExponentialAndCapped() {
+        assertEquals(1000, dispatcher.backoffMillis(1));
+        assertEquals(4000, dispatcher.backoffMillis(3));
+        assertEquals(60000, dispatcher.backoffMillis(20));
+    }
+
+    // Local stand-in for the SnsAsyncClient bean that records PublishBatch calls
+    private static class StubSns implements SnsAsyncClient {
+
+        private final List<Integer> batchSizes = new ArrayList<>();
+        private final Set<String> failingIds = new HashSet<>();
+        private final List<String> contentTypes = new ArrayList<>();
+        // When set, PublishBatch returns this future and never completes it
+        private CompletableFuture<PublishBatchResponse> unanswered;
+
+        @Override
+        public CompletableFuture<PublishBatchResponse> publishBatch(PublishBatchRequest request) {
+            batchSizes.add(request.publishBatchRequestEntries().size());
+            if (unanswered != null) {
+                return unanswered;
+            }
+
+            List<PublishBatchResultEntry> successful = new ArrayList<>();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            for (PublishBatchRequestEntry entry : request.publishBatchRequestEntries()) {
+                MessageAttributeValue contentType = entry.messageAttributes().get(VerificationMessageEncoder.CONTENT_TYPE_ATTRIBUTE);
+                if (contentType != null) {
+                    contentTypes.add(contentType.stringValue());
+                }
+                if (failingIds.contains(entry.id())) {
+                    failed.add(BatchResultErrorEntry.builder()
+                            .id(entry.id())
+                            .code("InternalError")
+                            .message("stubbed failure")
+                            .build());
+                } else {
+                    successful.add(PublishBatchResultEntry.builder()
+                            .id(entry.id())
+                            .messageId("msg-" + entry.id())
+                            .build());
+                }
+            }
+            return CompletableFuture.completedFuture(PublishBatchResponse.builder()
+                    .successful(successful)
+                    .failed(failed)
+                    .build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "sns";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
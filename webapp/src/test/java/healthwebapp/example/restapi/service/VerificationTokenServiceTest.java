@@ -0,0 +1,98 @@
+package healthwebapp.example.restapi.service;
+
+import healthwebapp.example.restapi.entity.User;
+import healthwebapp.example.restapi.entity.VerificationToken;
+import healthwebapp.example.restapi.repository.UserRepository;
+import healthwebapp.example.restapi.repository.VerificationTokenRepository;
+import healthwebapp.example.restapi.service.VerificationTokenService.IssuedToken;
+import healthwebapp.example.restapi.service.VerificationTokenService.Outcome;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VerificationTokenServiceTest {
+
+    @Autowired
+    private VerificationTokenRepository tokenRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private VerificationTokenService tokenService;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        tokenRepository.deleteAll();
+        userRepository.deleteAll();
+        UserProfileCache profileCache = new UserProfileCache(userRepository, new ReadYourWrites(5000, 100), transactionManager,
+                new SimpleMeterRegistry(), 100, 30);
+        tokenService = new VerificationTokenService(tokenRepository, userRepository, profileCache,
+                transactionManager, 10, 2);
+
+        user = new User();
+        user.setEmail("jane.doe@example.com");
+        user.setPassword("secret");
+        user.setFirstName("Jane");
+        user.setLastName("Doe");
+        user = userRepository.save(user);
+    }
+
+    @Test
+    void testTokenIsStoredHashedAndVerifiesOnce() {
+        IssuedToken issued = tokenService.issue(user.getId(), LocalDateTime.now());
+
+        VerificationToken stored = tokenRepository.findAll().get(0);
+        assertEquals(32, stored.getTokenHash().length);
+
+        assertEquals(Outcome.VERIFIED, verify(issued.token()));
+        assertTrue(userRepository.findById(user.getId()).orElseThrow().isVerified());
+        assertEquals(Outcome.INVALID, verify(issued.token()));
+    }
+
+    @Test
+    void testUnknownAndExpiredTokensAreRejected() {
+        IssuedToken issued = tokenService.issue(user.getId(), LocalDateTime.now().minusMinutes(11));
+
+        assertEquals(Outcome.INVALID, verify("not-a-token"));
+        assertEquals(Outcome.EXPIRED, verify(issued.token()));
+        assertFalse(userRepository.findById(user.getId()).orElseThrow().isVerified());
+    }
+
+    @Test
+    void testSweeperDeletesOnlyExpiredTokensInBatches() {
+        for (int i = 0; i < 5; i++) {
+            tokenService.issue(user.getId(), LocalDateTime.now().minusMinutes(11));
+        }
+        IssuedToken live = tokenService.issue(user.getId(), LocalDateTime.now());
+
+        tokenService.sweepExpired();
+
+        assertEquals(1, tokenRepository.count());
+        assertEquals(Outcome.VERIFIED, verify(live.token()));
+    }
+
+    // The service is not a Spring proxy here, so open the transaction its @Transactional would
+    private Outcome verify(String token) {
+        return new TransactionTemplate(transactionManager).execute(status -> tokenService.verify(token));
+    }
+}